@@ -0,0 +1,66 @@
+package com.ua.toolkit.cache;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+/**
+ * Download throughput at 1, 2, 4 and 8 connections. {@link RangeTestServer} caps each connection
+ * at {@link #PER_CONNECTION_BYTES_PER_SEC}, standing in for the per-flow limits CDNs and
+ * congested links impose, which are what parallel ranges work around. Results go to logcat
+ * under {@value #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CreativeDownloaderBenchmark
+{
+    private static final String TAG = "UA/DownloaderBench";
+    private static final long BODY_BYTES = 8 * CreativeDownloader.RANGE_SIZE; // 16 MB, 8 ranges
+    private static final long PER_CONNECTION_BYTES_PER_SEC = 4L * 1024 * 1024;
+    private static final int[] CONNECTIONS = { 1, 2, 4, 8 };
+
+    @Test
+    public void throughputByConnectionCount() throws Exception
+    {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        CreativeCache cache = CreativeCache.getInstance(context);
+        CreativeDownloader downloader = CreativeDownloader.getInstance(context);
+        long[] elapsedMs = new long[CONNECTIONS.length];
+
+        try (RangeTestServer server = new RangeTestServer(CreativeDownloaderTest.body(BODY_BYTES, 7)))
+        {
+            server.bytesPerSecond = PER_CONNECTION_BYTES_PER_SEC;
+            for (int i = 0; i < CONNECTIONS.length; i++)
+            {
+                int connections = CONNECTIONS[i];
+                String key = "bench-" + connections + "-" + System.nanoTime();
+                downloader.setMaxConnections(connections);
+                long start = SystemClock.elapsedRealtime();
+                CreativeDownloaderTest.Result result =
+                        CreativeDownloaderTest.download(downloader, key, server.url("bench.bin?c=" + connections));
+                elapsedMs[i] = Math.max(1, SystemClock.elapsedRealtime() - start);
+                cache.remove(key);
+                assertNull(result.error);
+                Log.i(TAG, String.format(Locale.ROOT, "%d connection(s): %d ms, %d KiB/s",
+                        connections, elapsedMs[i], BODY_BYTES * 1000 / elapsedMs[i] / 1024));
+            }
+        }
+        finally
+        {
+            downloader.setMaxConnections(4);
+        }
+        // Loose bound so a busy device doesn't flake: 4 connections should at least halve the time.
+        assertTrue("4 connections: " + elapsedMs[2] + " ms vs 1: " + elapsedMs[0] + " ms",
+                elapsedMs[2] * 2 < elapsedMs[0]);
+    }
+}
@@ -0,0 +1,253 @@
+package com.ua.toolkit.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CreativeDownloader against {@link RangeTestServer}: range splitting, resume from
+ * {@code .part.meta}, ETag / If-Range mismatches, the single-stream fallback and restarting a
+ * cancelled download.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CreativeDownloaderTest
+{
+    private static final long R = CreativeDownloader.RANGE_SIZE;
+    private static final String FILE = "creative.bin";
+
+    /** Outcome of one download: exactly one field is set. */
+    static final class Result
+    {
+        String path;
+        String error;
+    }
+
+    private CreativeCache cache;
+    private CreativeDownloader downloader;
+    private RangeTestServer server;
+    private String key;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        cache = CreativeCache.getInstance(context);
+        downloader = CreativeDownloader.getInstance(context);
+        downloader.setMaxConnections(4);
+        key = "test-" + UUID.randomUUID();
+        server = new RangeTestServer(body(2 * R + 12_345, 1));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+        cache.remove(key);
+        File part = cache.partFileFor(key, FILE);
+        part.delete();
+        new File(part.getPath() + ".meta").delete();
+        downloader.setMaxConnections(4);
+    }
+
+    @Test
+    public void splitsIntoRanges()
+    {
+        Result result = download(downloader, key, server.url(FILE));
+
+        assertNull(result.error);
+        assertArrayEquals(server.body, read(result.path));
+        List<String> seen = server.ranges();
+        assertEquals(4, seen.size());
+        assertEquals(new HashSet<>(Arrays.asList(
+                "bytes=0-0",
+                "bytes=0-" + (R - 1),
+                "bytes=" + R + "-" + (2 * R - 1),
+                "bytes=" + 2 * R + "-" + (server.body.length - 1))), new HashSet<>(seen));
+    }
+
+    @Test
+    public void resumesFromPartMeta()
+    {
+        server.cutRangeAt = 2 * R;
+        Result failed = download(downloader, key, server.url(FILE));
+        assertNotNull(failed.error);
+        assertTrue("progress kept", metaFile().exists());
+
+        server.cutRangeAt = -1;
+        server.clearRanges();
+        Result result = download(downloader, key, server.url(FILE));
+
+        assertNull(result.error);
+        assertArrayEquals(server.body, read(result.path));
+        assertEquals(Arrays.asList("bytes=0-0", "bytes=" + 2 * R + "-" + (server.body.length - 1)), server.ranges());
+        assertFalse(metaFile().exists());
+    }
+
+    @Test
+    public void changedEtagDiscardsProgress()
+    {
+        server.cutRangeAt = 2 * R;
+        assertNotNull(download(downloader, key, server.url(FILE)).error);
+
+        server.cutRangeAt = -1;
+        server.body = body(server.body.length, 2); // same size, new version
+        server.etag = "\"v2\"";
+        server.clearRanges();
+        Result result = download(downloader, key, server.url(FILE));
+
+        assertNull(result.error);
+        assertArrayEquals(server.body, read(result.path));
+        assertEquals("every range fetched again", 4, server.ranges().size());
+    }
+
+    @Test
+    public void ifRangeMismatchFailsAndRestarts()
+    {
+        // The file changes between the probe and the range requests: If-Range gets a full 200.
+        byte[] updated = body(server.body.length, 3);
+        server.nextBody = updated;
+        server.nextEtag = "\"v2\"";
+        Result failed = download(downloader, key, server.url(FILE));
+        assertNotNull(failed.error);
+        assertFalse("stale progress dropped", metaFile().exists());
+
+        Result result = download(downloader, key, server.url(FILE));
+        assertNull(result.error);
+        assertArrayEquals(updated, read(result.path));
+    }
+
+    @Test
+    public void fallsBackToSingleStreamWithoutRanges()
+    {
+        server.acceptRanges = false;
+        Result result = download(downloader, key, server.url(FILE));
+
+        assertNull(result.error);
+        assertArrayEquals(server.body, read(result.path));
+        assertEquals(Arrays.asList("bytes=0-0", ""), server.ranges());
+    }
+
+    @Test
+    public void restartAfterCancelWaitsForOldWorkers() throws InterruptedException
+    {
+        server.bytesPerSecond = 1024 * 1024; // slow enough to cancel mid-range
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        CreativeDownloader.Task first = downloader.download(key, server.url(FILE), 0, recorder("first", events, latch));
+        Thread.sleep(500);
+        first.cancel();
+        CreativeDownloader.Task second = downloader.download(key, server.url(FILE), 0, recorder("second", events, latch));
+        assertNotSame(first, second);
+        server.bytesPerSecond = 0;
+
+        assertTrue("downloads timed out", latch.await(60, TimeUnit.SECONDS));
+        assertEquals("first:cancelled", events.get(0));
+        assertEquals("second:ok", events.get(1));
+        assertArrayEquals(server.body, read(cache.get(key)));
+    }
+
+    // --- Helpers ---
+
+    private static CreativeDownloader.Callback recorder(String name, List<String> events, CountDownLatch latch)
+    {
+        return new CreativeDownloader.Callback()
+        {
+            @Override
+            public void onDownloadComplete(String k, String path)
+            {
+                events.add(name + ":ok");
+                latch.countDown();
+            }
+
+            @Override
+            public void onDownloadFailed(String k, String error)
+            {
+                events.add(name + ":" + error);
+                latch.countDown();
+            }
+        };
+    }
+
+    static Result download(CreativeDownloader downloader, String key, String url)
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        Result result = new Result();
+        downloader.download(key, url, 0, new CreativeDownloader.Callback()
+        {
+            @Override
+            public void onDownloadComplete(String k, String path)
+            {
+                result.path = path;
+                latch.countDown();
+            }
+
+            @Override
+            public void onDownloadFailed(String k, String error)
+            {
+                result.error = error;
+                latch.countDown();
+            }
+        });
+        try
+        {
+            assertTrue("download timed out", latch.await(60, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+            throw new AssertionError(e);
+        }
+        return result;
+    }
+
+    static byte[] body(long size, long seed)
+    {
+        byte[] data = new byte[(int) size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private File metaFile()
+    {
+        return new File(cache.partFileFor(key, FILE).getPath() + ".meta");
+    }
+
+    private static byte[] read(String path)
+    {
+        assertNotNull(path);
+        try
+        {
+            return Files.readAllBytes(new File(path).toPath());
+        }
+        catch (IOException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+}
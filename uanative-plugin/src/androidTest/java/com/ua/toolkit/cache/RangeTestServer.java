@@ -0,0 +1,175 @@
+package com.ua.toolkit.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback HTTP/1.1 stand-in for CreativeDownloader tests. Serves one body and honours (or
+ * ignores) {@code Range} and {@code If-Range}. It can cut one range short, swap the body when the
+ * probe is answered, and cap each connection's bandwidth. Every response closes its connection.
+ */
+final class RangeTestServer implements Closeable
+{
+    private final ServerSocket socket;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final List<String> ranges = new ArrayList<>(); // guarded by itself; "" for no Range header
+
+    volatile byte[] body;
+    volatile String etag = "\"v1\"";
+    volatile boolean acceptRanges = true;
+    volatile long cutRangeAt = -1;     // a range starting here sends half its bytes, then hangs up
+    volatile byte[] nextBody;          // replaces body (and nextEtag the etag) at the probe
+    volatile String nextEtag;
+    volatile long bytesPerSecond = 0;  // per connection; 0 = unthrottled
+
+    RangeTestServer(byte[] body) throws IOException
+    {
+        this.body = body;
+        socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        workers.execute(this::acceptLoop);
+    }
+
+    String url(String path)
+    {
+        return "http://127.0.0.1:" + socket.getLocalPort() + "/" + path;
+    }
+
+    /** Range headers received so far, in arrival order. */
+    List<String> ranges()
+    {
+        synchronized (ranges) { return new ArrayList<>(ranges); }
+    }
+
+    void clearRanges()
+    {
+        synchronized (ranges) { ranges.clear(); }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop()
+    {
+        while (!socket.isClosed())
+        {
+            try
+            {
+                Socket client = socket.accept();
+                workers.execute(() -> serve(client));
+            }
+            catch (IOException e)
+            {
+                return; // closed
+            }
+        }
+    }
+
+    private void serve(Socket client)
+    {
+        try (Socket c = client)
+        {
+            InputStream in = c.getInputStream();
+            if (readLine(in) == null) return;
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty())
+            {
+                int colon = line.indexOf(':');
+                if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+            String range = headers.get("range");
+            synchronized (ranges) { ranges.add(range != null ? range : ""); }
+
+            byte[] data = body;
+            String tag = etag;
+            long from = 0, to = data.length - 1;
+            boolean partial = false;
+            String ifRange = headers.get("if-range");
+            if (acceptRanges && range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(tag)))
+            {
+                String[] bounds = range.substring(6).split("-", 2);
+                from = Long.parseLong(bounds[0]);
+                to = bounds[1].isEmpty() ? data.length - 1 : Math.min(data.length - 1, Long.parseLong(bounds[1]));
+                partial = true;
+            }
+            long length = to - from + 1;
+            if (partial && from == 0 && to == 0 && nextBody != null)
+            {
+                // Swapped before answering, so every range request sees the new version.
+                body = nextBody;
+                etag = nextEtag;
+                nextBody = null;
+            }
+
+            StringBuilder head = new StringBuilder(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+            head.append("Content-Length: ").append(length).append("\r\n");
+            if (partial) head.append("Content-Range: bytes ").append(from).append('-').append(to).append('/').append(data.length).append("\r\n");
+            if (tag != null) head.append("ETag: ").append(tag).append("\r\n");
+            if (acceptRanges) head.append("Accept-Ranges: bytes\r\n");
+            head.append("Connection: close\r\n\r\n");
+            OutputStream out = c.getOutputStream();
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+            write(out, data, from, partial && from == cutRangeAt ? length / 2 : length);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Client hung up early — the probe does that when a server without ranges sends the whole body.
+        }
+    }
+
+    private void write(OutputStream out, byte[] data, long from, long count) throws IOException
+    {
+        long start = System.nanoTime();
+        long sent = 0;
+        while (sent < count)
+        {
+            int chunk = (int) Math.min(16 * 1024, count - sent);
+            out.write(data, (int) (from + sent), chunk);
+            sent += chunk;
+            long rate = bytesPerSecond;
+            if (rate <= 0) continue;
+            long aheadMs = sent * 1000 / rate - (System.nanoTime() - start) / 1_000_000;
+            if (aheadMs <= 0) continue;
+            try
+            {
+                Thread.sleep(aheadMs);
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException("interrupted");
+            }
+        }
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1)
+        {
+            if (b == '\n') return line.toString("ISO-8859-1").replace("\r", "");
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString("ISO-8859-1") : null;
+    }
+}
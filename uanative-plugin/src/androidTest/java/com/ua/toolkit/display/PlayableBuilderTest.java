@@ -0,0 +1,91 @@
+package com.ua.toolkit.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * PlayableBuilder's inline blob extraction: data URIs in markup and CSS move to
+ * {@code __ua_assets/}, while those inside script bodies stay where game code expects them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayableBuilderTest
+{
+    private static final int BLOB_BYTES = 40 * 1024; // base64 over the 32 KB extraction threshold
+
+    private Context context;
+    private File dir;
+
+    @Before
+    public void setUp()
+    {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dir = new File(context.getCacheDir(), "playable-" + UUID.randomUUID());
+        assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void extractsMarkupBlobsButNotScriptStrings() throws IOException
+    {
+        String imageBlob = blob(1);
+        String styleBlob = blob(2);
+        String scriptBlob = blob(3);
+        String html = "<!DOCTYPE html><html><head>"
+                + "<style>body { background: url('data:image/png;base64," + styleBlob + "'); }</style>"
+                + "</head><body>"
+                + "<img src=\"data:image/png;base64," + imageBlob + "\">"
+                + "<script>var sprite = new Image(); sprite.src = \"data:image/png;base64," + scriptBlob + "\";</script>"
+                + "</body></html>";
+
+        PlayableBuilder.Artifact artifact = PlayableBuilder.buildBlocking(context, write(html));
+
+        String document = new String(Files.readAllBytes(artifact.document.toPath()), StandardCharsets.UTF_8);
+        assertFalse("img blob extracted", document.contains(imageBlob));
+        assertFalse("style blob extracted", document.contains(styleBlob));
+        assertTrue("script blob left inline", document.contains("sprite.src = \"data:image/png;base64," + scriptBlob + "\""));
+        String[] assets = artifact.assetsDir.list();
+        assertNotNull(assets);
+        assertEquals(2, assets.length);
+    }
+
+    private File write(String html) throws IOException
+    {
+        File file = new File(dir, "index.html");
+        Files.write(file.toPath(), html.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String blob(long seed)
+    {
+        byte[] data = new byte[BLOB_BYTES];
+        new Random(seed).nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+}
@@ -14,14 +14,23 @@ import android.view.WindowManager;
 import android.window.OnBackInvokedCallback;
 import android.window.OnBackInvokedDispatcher;
 
+import com.ua.toolkit.cache.CreativeCache;
+import com.ua.toolkit.cache.CreativeVerifier;
 import com.ua.toolkit.display.AdAudioManager;
+import com.ua.toolkit.display.AdCodecVideoPlayer;
 import com.ua.toolkit.display.AdPlayableController;
+import com.ua.toolkit.display.AdPosterFrame;
 import com.ua.toolkit.display.AdTimerManager;
 import com.ua.toolkit.display.AdUIManager;
+import com.ua.toolkit.display.AdVideoEngine;
 import com.ua.toolkit.display.AdVideoPlayer;
+import com.ua.toolkit.display.PlayablePreloader;
+import com.ua.toolkit.media.DecoderCapabilities;
+import com.ua.toolkit.media.RenditionSelector;
 import com.ua.toolkit.popup.AdPopup;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 
 public class AdActivity extends Activity implements
         AdUIManager.Listener,
@@ -30,15 +39,19 @@ public class AdActivity extends Activity implements
 {
     private static final String TAG = "UA/AdActivity";
     private static final int PREPARE_TIMEOUT_MS = 15_000;
+    static final String INTEGRITY_FAILURE = "Creative failed integrity check: ";
     public static AdCallback callback;
     private static WeakReference<AdActivity> currentInstanceRef;
     private AdUIManager uiManager;
-    private AdVideoPlayer videoPlayer;
+    private AdVideoEngine videoPlayer;
+    private String videoPath; // rendition picked by RenditionSelector, else config.videoPath
+    private CreativeCache.Pin creativePin; // held for the lifetime of the ad
     private AdAudioManager audioManager;
     private AdTimerManager timerManager;
     private AdPopup popup;
     private AdConfig config;
     private AdPlayableController playableController;
+    private AdMetrics metrics;
     private boolean isPlayable = false;
     private boolean isFullyWatched = false;
     private boolean resultSent = false;
@@ -46,6 +59,7 @@ public class AdActivity extends Activity implements
     private boolean closeButtonEarned = false;
     private boolean skipTapped = false;
     private boolean resumingFromPlayOverlay = false;
+    private boolean awaitingFirstFrame = false; // poster stays up until the decoder renders
     private boolean adStartedFired  = false;
     private boolean adClickFired    = false;
     private boolean adFeedbackGiven = false;
@@ -65,6 +79,7 @@ public class AdActivity extends Activity implements
     protected void onCreate(Bundle savedInstanceState)
     {
         super.onCreate(savedInstanceState);
+        metrics = new AdMetrics(); // first — all timings are offsets from activity creation
         currentInstanceRef = new WeakReference<>(this);
 
         parseIntentConfig();               // must precede lockOrientation — config.orientation needed
@@ -78,6 +93,12 @@ public class AdActivity extends Activity implements
             return;
         }
 
+        // Undecodable creatives are failed in startAd(), before the impression. That check is
+        // skipped until the device profile has loaded — warmUp() makes sure the next ad can check.
+        DecoderCapabilities.warmUp(this);
+        videoPath = isPlayable ? config.videoPath : selectRendition();
+        pinCreative(videoPath);
+
         if (savedInstanceState != null)
         {
             if (callback == null)
@@ -109,6 +130,7 @@ public class AdActivity extends Activity implements
         if (!isPlayable && savedVideoPosition > 0)
         {
             videoPlayer.setSavedPosition(savedVideoPosition);
+            requestPoster(savedVideoPosition);
             savedVideoPosition = 0;
         }
 
@@ -171,9 +193,44 @@ public class AdActivity extends Activity implements
 
     private void parseIntentConfig() {
         isPlayable = getIntent().getBooleanExtra("IS_PLAYABLE", false);
+        metrics.setPlayable(isPlayable);
         config = AdConfig.fromIntent(getIntent());
     }
 
+    /** Chooses among config.renditions for this device; falls back to the single VIDEO_PATH. */
+    private String selectRendition() {
+        RenditionSelector.Selection selection = RenditionSelector.select(this, config.renditions);
+        if (selection == null) return config.videoPath;
+        metrics.setRendition(selection.toJson());
+        return selection.rendition.path;
+    }
+
+    /**
+     * Whether this process may use CreativeCache directly. The isolated-process host leaves
+     * pinning, eviction and playable builds to the game process, which owns the cache journal
+     * and the {@code ua_playables} directories.
+     */
+    boolean ownsCreativeCache() {
+        return true;
+    }
+
+    /** True while an ad activity is alive in this process. */
+    static boolean isAdShowing() {
+        return currentInstanceRef != null && currentInstanceRef.get() != null;
+    }
+
+    /** Keeps the native cache from evicting the creative while it is on screen. Pins on the cache thread. */
+    private void pinCreative(String path) {
+        if (!ownsCreativeCache()) return;
+        creativePin = CreativeCache.pinPathsAsync(this, Collections.singletonList(path));
+    }
+
+    private void releaseCreativePin() {
+        if (creativePin == null) return;
+        creativePin.release();
+        creativePin = null;
+    }
+
     private void initUIManager() {
         uiManager = new AdUIManager(this, this, config.isRewarded,
                 config.rewardCountdownText, config.rewardEarnedText);
@@ -184,6 +241,7 @@ public class AdActivity extends Activity implements
         uiManager.setRewardTextColor(config.rewardTextColor);
         uiManager.setFlowB(config.isFlowB);
         uiManager.setPlayable(isPlayable);
+        uiManager.setUseTextureView(!isPlayable && config.useCodecEngine);
         uiManager.setOpenStoreButtonText(config.openStoreButtonText);
         uiManager.setupUI();
         uiManager.setupFullscreen();
@@ -219,20 +277,35 @@ public class AdActivity extends Activity implements
 
         if (isPlayable) {
             // Remove the VideoView placeholder UIManager added; WebView takes its place.
-            android.view.View videoViewPlaceholder = uiManager.getVideoView();
-            if (videoViewPlaceholder != null && videoViewPlaceholder.getParent() != null) {
-                ((android.view.ViewGroup) videoViewPlaceholder.getParent()).removeView(videoViewPlaceholder);
-            }
+            uiManager.removeVideoView();
             try {
-                playableController = new AdPlayableController(
-                        this, uiManager.getRootLayout(), new AdJsBridge(this),
-                        this::onContentReady, this::failAd);
+                AdPlayableController preloaded = PlayablePreloader.take(config.videoPath);
+                if (preloaded != null) {
+                    // Already loaded off-screen — reparent it instead of building a new WebView.
+                    preloaded.getJsBridge().bind(this);
+                    preloaded.attach(this, uiManager.getRootLayout(), this::onContentReady, this::failAd);
+                    playableController = preloaded;
+                    metrics.setPlayablePreloaded(true);
+                } else {
+                    playableController = new AdPlayableController(
+                            this, uiManager.getRootLayout(), new AdJsBridge(this),
+                            this::onContentReady, this::failAd);
+                    metrics.setWebViewCreation(WebViewWarmUp.getLastCreateMs(), WebViewWarmUp.wasLastCreateWarm());
+                }
+                playableController.setThrottleFps(config.playableThrottleFps);
+                playableController.setBuildArtifacts(ownsCreativeCache());
+                playableController.setIdleTimeouts(config.playableIdleStepDownSec * 1000L,
+                        config.playableIdlePauseSec * 1000L);
+                playableController.setRendererListener(metrics::addRendererGone);
             } catch (Exception e) {
                 failAd("WebView initialization failed: " + e.getMessage());
                 return;
             }
         } else {
-            videoPlayer = new AdVideoPlayer(uiManager.getVideoView(), this);
+            videoPlayer = config.useCodecEngine
+                    ? new AdCodecVideoPlayer(uiManager.getTextureView(), this, config.videoDecoderName)
+                    : new AdVideoPlayer(uiManager.getVideoView(), this);
+            videoPlayer.setMetrics(metrics);
         }
 
         // Timer uses elapsed-time countdown for both interstitial and playable.
@@ -280,7 +353,20 @@ public class AdActivity extends Activity implements
 
     private class PopupEventHandler implements AdPopup.Listener
     {
-        @Override public void onPeeked() { }
+        @Override
+        public void onPeeked()
+        {
+            // The card stays over the game from here on (Stage 1, then Stage 3).
+            if (playableController != null)
+                playableController.setThrottled(AdPlayableController.THROTTLE_POPUP_CARD, true);
+        }
+
+        @Override
+        public void onFeedbackPanelToggled(boolean open)
+        {
+            if (playableController != null)
+                playableController.setThrottled(AdPlayableController.THROTTLE_FEEDBACK_PANEL, open);
+        }
 
         @Override
         public void onDismissed()
@@ -350,6 +436,7 @@ public class AdActivity extends Activity implements
         // Cancel the load watchdog — content is ready regardless of whether this was a video or playable.
         prepareWatchdog.removeCallbacks(prepareTimeoutRunnable);
         if (isPlayable) {
+            metrics.markPrepareEnd();
             uiManager.showPlayableControls();
             // Re-apply mute state in case the user toggled before onPageFinished fired.
             if (playableController != null) playableController.applyInitialMute(audioManager.isMuted());
@@ -364,6 +451,11 @@ public class AdActivity extends Activity implements
         if (popup != null) popup.openStore();
     }
 
+    // Called by AdJsBridge.reportPerf() from the injected probe, roughly every 5 s of play.
+    void handlePlayablePerf(String sampleJson) {
+        if (metrics != null && !resultSent) metrics.addPlayablePerfSample(sampleJson);
+    }
+
     private void startAd() {
         if (resultSent) return; // initializeManagers() failed and already called failAd
         prepareTimeoutRunnable = () -> {
@@ -374,18 +466,61 @@ public class AdActivity extends Activity implements
         };
         if (isPlayable) {
             if (playableController == null) return; // defensive: WebView init failed silently
-            try {
-                playableController.load(config.videoPath);
-            } catch (Exception e) {
-                failAd("Playable HTML read/patch failed: " + e.getMessage());
-                return;
-            }
+            metrics.markPrepareStart();
+            loadVerified(config.videoPath, () -> {
+                try {
+                    playableController.load(config.videoPath);
+                } catch (Exception e) {
+                    failAd("Playable HTML read/patch failed: " + e.getMessage());
+                }
+            });
         } else {
-            videoPlayer.load(config.videoPath);
+            if (!awaitingFirstFrame) requestPoster(0); // restoration path already requested its frame
+            loadVerified(videoPath, () -> DecoderCapabilities.preflightAsync(videoPath, unsupported -> {
+                if (resultSent || isFinishing()) return;
+                if (unsupported != null) failAd(unsupported);
+                else videoPlayer.load(videoPath);
+            }));
         }
         prepareWatchdog.postDelayed(prepareTimeoutRunnable, PREPARE_TIMEOUT_MS);
     }
 
+    /**
+     * Runs {@code load} once the creative matches its expected digest. A digest cached from the
+     * download or an earlier show applies immediately. Otherwise the file is hashed off-thread
+     * under the prepare watchdog, and a mismatch fails the ad before anything plays.
+     */
+    private void loadVerified(String path, Runnable load) {
+        String expected = config.expectedSha256(path);
+        if (expected == null) {
+            load.run();
+            return;
+        }
+        CreativeVerifier.verifyAsync(this, path, expected, ok -> {
+            if (resultSent || isFinishing()) return;
+            if (ok) {
+                load.run();
+                return;
+            }
+            releaseCreativePin();
+            if (ownsCreativeCache()) CreativeVerifier.evict(this, path);
+            failAd(INTEGRITY_FAILURE + path);
+        });
+    }
+
+    /**
+     * Masks the black video surface with the frame at {@code positionMs} until the decoder
+     * renders. The frame is extracted off-thread (or read from the on-disk cache); a result
+     * that arrives after rendering has started is dropped.
+     */
+    private void requestPoster(int positionMs) {
+        awaitingFirstFrame = true;
+        android.util.DisplayMetrics dm = getResources().getDisplayMetrics();
+        AdPosterFrame.load(videoPath, positionMs, dm.widthPixels, dm.heightPixels, poster -> {
+            if (awaitingFirstFrame && !isFinishing() && uiManager != null) uiManager.showPoster(poster);
+        });
+    }
+
     private void finishWithResult(boolean success) {
         Log.d(TAG, "finishWithResult: success=" + success + " resultSent=" + resultSent);
         if (resultSent) return;
@@ -401,6 +536,7 @@ public class AdActivity extends Activity implements
         // audio focus (held by the HTML5 game's Web Audio / Howler) is fully released before
         // the next ad SDK requests focus.
         if (playableController != null) { playableController.destroy(); playableController = null; }
+        deliverMetrics();
         if (callback != null) callback.onAdFinished(success);
         callback = null;
         finish();
@@ -419,12 +555,26 @@ public class AdActivity extends Activity implements
         if (timerManager != null) timerManager.stop();
         if (audioManager != null) audioManager.release();
         if (playableController != null) { playableController.destroy(); playableController = null; }
+        deliverMetrics();
         if (callback != null) callback.onAdFailed(reason);
         callback = null;
         finish();
         overridePendingTransition(0, R.anim.slide_out_bottom);
     }
 
+    /**
+     * Hands the metrics snapshot to Unity ahead of the terminal callback. A throwing handler is
+     * logged and ignored, so onAdFinished / onAdFailed always follows.
+     */
+    private void deliverMetrics() {
+        if (callback == null || metrics == null) return;
+        try {
+            callback.onAdMetrics(metrics.toJson());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "onAdMetrics threw — continuing with the terminal callback", e);
+        }
+    }
+
     // --- AdUIManager.Listener (continued) ---
 
     @Override public void onCloseClicked() {
@@ -469,12 +619,19 @@ public class AdActivity extends Activity implements
         boolean firstPrepare = !adStartedFired;
         Log.d(TAG, "onVideoPrepared — firstPrepare=" + firstPrepare + " peekDelay=" + config.peekDelay);
         prepareWatchdog.removeCallbacks(prepareTimeoutRunnable);
-        audioManager.setMediaPlayer(mp);
+        AdAudioManager.VolumeControl volume = videoPlayer.getVolumeControl();
+        if (volume != null) audioManager.setVolumeControl(volume);
+        else audioManager.setMediaPlayer(mp);
         if (firstPrepare) {
             onContentReady();
         }
     }
 
+    @Override public void onVideoRenderingStart() {
+        awaitingFirstFrame = false;
+        uiManager.hidePoster();
+    }
+
     @Override public void onVideoCompleted() {
         Log.d(TAG, "onVideoCompleted — isRewarded=" + config.isRewarded + " isFullyWatched=" + isFullyWatched);
         if (config.isRewarded && !isFullyWatched) {
@@ -618,6 +775,9 @@ public class AdActivity extends Activity implements
             if (playableController != null) playableController.pause();
         } else if (videoPlayer != null) {
             videoPlayer.suspend(); // suspend (not pause) so MediaPlayer releases the decoder surface
+            // Cover the surface with the suspend-position frame so the return from the
+            // background shows the paused picture instead of a black flash.
+            if (!isFinishing() && !resultSent) requestPoster(videoPlayer.getLastPausedPosition());
         }
         if (timerManager != null) timerManager.pause();
     }
@@ -685,13 +845,14 @@ public class AdActivity extends Activity implements
         Log.d(TAG, "onDestroy — resultSent=" + resultSent);
         prepareWatchdog.removeCallbacks(prepareTimeoutRunnable);
         flowBHandler.removeCallbacksAndMessages(null);
-        if (!resultSent && callback != null) { callback.onAdFinished(false); callback = null; }
+        if (!resultSent && callback != null) { deliverMetrics(); callback.onAdFinished(false); callback = null; }
         if (currentInstanceRef != null && currentInstanceRef.get() == this) { currentInstanceRef.clear(); currentInstanceRef = null; }
         if (popup != null) { popup.cancel(); popup = null; }
         if (timerManager != null) timerManager.stop();
         if (audioManager != null) audioManager.release();
         if (playableController != null) { playableController.destroy(); playableController = null; }
         if (videoPlayer != null) videoPlayer.stop();
+        releaseCreativePin();
     }
 
     public static void dismissAd() {
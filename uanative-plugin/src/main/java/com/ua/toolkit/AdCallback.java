@@ -10,4 +10,11 @@ public interface AdCallback {
     void onAdFinished(boolean success);
     void onAdFailed(String reason);
     void onAdFeedback(String reason);
+
+    /**
+     * Per-ad startup/playback timings as a JSON object (see AdMetrics).
+     * Fired once, immediately before onAdFinished or onAdFailed. An exception thrown here is
+     * logged and swallowed; the terminal callback is still delivered.
+     */
+    void onAdMetrics(String metricsJson);
 }
\ No newline at end of file
@@ -2,7 +2,12 @@ package com.ua.toolkit;
 
 import android.content.Intent;
 import android.graphics.Color;
+
+import com.ua.toolkit.media.VideoRendition;
+
 import java.io.File;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Configuration data for ad display.
@@ -33,6 +38,11 @@ public class AdConfig {
         static final String  REWARD_EARNED      = "Reward earned!";
         static final int     REWARD_TEXT_SIZE   = 14;
         static final String  OPEN_STORE         = "OPEN STORE";
+
+        // Playable
+        static final int     PLAYABLE_THROTTLE_FPS = 30;
+        static final int     PLAYABLE_IDLE_STEP_DOWN = 10;
+        static final int     PLAYABLE_IDLE_PAUSE    = 30;
     }
 
     private static final class Limits {
@@ -53,6 +63,10 @@ public class AdConfig {
         static final int MAX_BTN_WIDTH          = 250;
         static final int MIN_BTN_HEIGHT         = 20;
         static final int MAX_BTN_HEIGHT         = 100;
+
+        static final int MIN_THROTTLE_FPS       = 0;   // 0 = never throttle
+        static final int MAX_THROTTLE_FPS       = 60;
+        static final int MAX_IDLE_SEC           = 300; // 0 = step disabled
     }
 
     // --- Final Properties ---
@@ -92,6 +106,15 @@ public class AdConfig {
     public final String  rewardTextColor;
     public final String  openStoreButtonText;
 
+    public final boolean useCodecEngine;   // opt-in MediaCodec engine instead of VideoView
+    public final String  videoDecoderName; // optional codec name override for the codec engine
+
+    public final List<VideoRendition> renditions; // alternative encodings of videoPath; may be empty
+    public final String  videoSha256; // expected SHA-256 (hex) of videoPath; null = not verified
+    public final int     playableThrottleFps; // rAF cap while overlays cover a playable or the device is hot
+    public final int     playableIdleStepDownSec; // no touch for this long → IDLE_FPS
+    public final int     playableIdlePauseSec;    // no touch for this long → pause + tap-to-continue
+
     // --- Constructor ---
 
     public AdConfig(
@@ -123,7 +146,14 @@ public class AdConfig {
             String  rewardEarnedText,
             int     rewardTextSizeSp,
             String  rewardTextColor,
-            String  openStoreButtonText
+            String  openStoreButtonText,
+            boolean useCodecEngine,
+            String  videoDecoderName,
+            List<VideoRendition> renditions,
+            String  videoSha256,
+            int     playableThrottleFps,
+            int     playableIdleStepDownSec,
+            int     playableIdlePauseSec
     ) {
         // Core
         this.videoPath   = videoPath;
@@ -165,6 +195,19 @@ public class AdConfig {
         this.rewardTextSizeSp       = clamp(rewardTextSizeSp, Limits.MIN_TEXT_SIZE, Limits.MAX_TEXT_SIZE, Defaults.REWARD_TEXT_SIZE);
         this.rewardTextColor        = validateHex(rewardTextColor, Defaults.GET_TEXT_COLOR);
         this.openStoreButtonText    = validateString(openStoreButtonText, Defaults.OPEN_STORE, Limits.MAX_BTN_STR_LEN);
+
+        // Playback engine
+        this.useCodecEngine   = useCodecEngine;
+        this.videoDecoderName = (videoDecoderName != null && !videoDecoderName.isEmpty()) ? videoDecoderName : null;
+        this.renditions       = renditions;
+
+        // Integrity
+        this.videoSha256 = (videoSha256 != null && videoSha256.length() == 64) ? videoSha256.toLowerCase(Locale.ROOT) : null;
+
+        // Playable
+        this.playableThrottleFps = clamp(playableThrottleFps, Limits.MIN_THROTTLE_FPS, Limits.MAX_THROTTLE_FPS, Defaults.PLAYABLE_THROTTLE_FPS);
+        this.playableIdleStepDownSec = clamp(playableIdleStepDownSec, Limits.MIN_DELAY, Limits.MAX_IDLE_SEC, Defaults.PLAYABLE_IDLE_STEP_DOWN);
+        this.playableIdlePauseSec    = clamp(playableIdlePauseSec,    Limits.MIN_DELAY, Limits.MAX_IDLE_SEC, Defaults.PLAYABLE_IDLE_PAUSE);
     }
 
     // --- Helpers ---
@@ -228,13 +271,38 @@ public class AdConfig {
                 intent.getStringExtra("REWARD_EARNED_TEXT"),
                 intent.getIntExtra("REWARD_TEXT_SIZE_SP", -1),
                 intent.getStringExtra("REWARD_TEXT_COLOR"),
-                intent.getStringExtra("OPEN_STORE_BUTTON_TEXT")
+                intent.getStringExtra("OPEN_STORE_BUTTON_TEXT"),
+                intent.getBooleanExtra("USE_CODEC_ENGINE", false),
+                intent.getStringExtra("VIDEO_DECODER_NAME"),
+                VideoRendition.parseList(intent.getStringExtra("VIDEO_RENDITIONS")),
+                intent.getStringExtra("VIDEO_SHA256"),
+                intent.getIntExtra("PLAYABLE_THROTTLE_FPS", -1),
+                intent.getIntExtra("PLAYABLE_IDLE_STEP_DOWN_SEC", -1),
+                intent.getIntExtra("PLAYABLE_IDLE_PAUSE_SEC", -1)
         );
     }
 
+    /** Expected digest of {@code path}: the matching rendition's, or videoSha256 for the main file. */
+    public String expectedSha256(String path) {
+        if (path == null) return null;
+        for (VideoRendition r : renditions) {
+            if (path.equals(r.path)) return r.sha256;
+        }
+        return path.equals(videoPath) ? videoSha256 : null;
+    }
+
+    /** Valid if the main file or at least one rendition is on disk. */
     public boolean isValid() {
-        if (videoPath == null || videoPath.isEmpty()) return false;
-        File file = new File(videoPath);
+        if (isFilePresent(videoPath)) return true;
+        for (VideoRendition r : renditions) {
+            if (r.isFilePresent()) return true;
+        }
+        return false;
+    }
+
+    private static boolean isFilePresent(String path) {
+        if (path == null || path.isEmpty()) return false;
+        File file = new File(path);
         return file.exists() && file.length() > 0;
     }
 }
\ No newline at end of file
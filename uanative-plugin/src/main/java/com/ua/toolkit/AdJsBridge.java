@@ -1,19 +1,47 @@
 package com.ua.toolkit;
 
+import android.util.Log;
 import android.webkit.JavascriptInterface;
 import java.lang.ref.WeakReference;
 
+/**
+ * {@code window.AdBridge} for playables. A bridge created for a preloaded WebView starts unbound
+ * and is bound to the AdActivity that shows it; calls made while unbound are dropped.
+ */
 public class AdJsBridge {
-    private final WeakReference<AdActivity> activityRef;
+    private static final String TAG = "UA/AdJsBridge";
+    private static final int MAX_PERF_SAMPLE_CHARS = 2048;
+    private volatile WeakReference<AdActivity> activityRef;
+
+    public AdJsBridge() {
+        this.activityRef = new WeakReference<>(null);
+    }
 
     public AdJsBridge(AdActivity activity) {
         this.activityRef = new WeakReference<>(activity);
     }
 
+    /** Routes bridge calls to {@code activity} from now on. */
+    public void bind(AdActivity activity) {
+        this.activityRef = new WeakReference<>(activity);
+    }
+
     @JavascriptInterface
     public void openStore() {
         AdActivity activity = activityRef.get();
-        if (activity == null || activity.isFinishing()) return;
+        if (activity == null) {
+            Log.d(TAG, "openStore ignored — bridge not bound to a visible ad");
+            return;
+        }
+        if (activity.isFinishing()) return;
         activity.runOnUiThread(activity::handleStoreRedirect);
     }
+
+    /** One performance window from the injected probe (see AdPlayableController.PERF_PROBE_JS). */
+    @JavascriptInterface
+    public void reportPerf(String sampleJson) {
+        AdActivity activity = activityRef.get();
+        if (activity == null || sampleJson == null || sampleJson.length() > MAX_PERF_SAMPLE_CHARS) return;
+        activity.runOnUiThread(() -> activity.handlePlayablePerf(sampleJson));
+    }
 }
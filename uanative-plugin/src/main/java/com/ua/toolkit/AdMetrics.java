@@ -0,0 +1,246 @@
+package com.ua.toolkit;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Per-ad startup and playback timings.
+ * One instance lives for the lifetime of an AdActivity; producers (AdVideoPlayer, AdActivity)
+ * stamp events as they happen and the result is serialised once and delivered to Unity via
+ * {@link AdCallback#onAdMetrics(String)} right before the terminal finished/failed callback.
+ *
+ * All timestamps are {@link SystemClock#elapsedRealtime()} offsets in ms from activity creation;
+ * -1 means the event never happened. Main thread only — no synchronisation.
+ */
+public class AdMetrics
+{
+    private static final String TAG = "UA/AdMetrics";
+    /** Bump when keys are renamed or their meaning changes so dashboards can split series. */
+    static final int SCHEMA_VERSION = 1;
+
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private boolean isPlayable = false;
+    private JSONObject rendition; // RenditionSelector choice, null when the single VIDEO_PATH was played
+    private long webViewCreateMs = -1; // playables: WebView construction time
+    private boolean webViewWarm = false; // provider already loaded by WebViewWarmUp
+    private boolean playablePreloaded = false; // WebView came from PlayablePreloader
+
+    // --- Playable renderer losses (onRenderProcessGone) ---
+    private int rendererGone      = 0;
+    private int rendererCrashes   = 0; // the rest were killed by the system for memory
+    private int rendererRecovered = 0; // reloaded into a fresh WebView instead of failing the ad
+
+    // --- Playable runtime (PERF_PROBE_JS samples, ~5 s windows) ---
+    /** Average fps below this flags the creative as too heavy for the device. */
+    static final double PLAYABLE_FPS_FLOOR = 30.0;
+    private int    perfWindows      = 0;
+    private long   perfFrames       = 0;
+    private long   perfWindowMs     = 0;
+    private double perfMinFps       = -1;
+    private int    perfSlowFrames   = 0;
+    private long   perfWorstFrameMs = -1;
+    private int    perfLongTasks    = 0;
+    private long   perfLongTaskMs   = 0;
+    private long   perfHeapMax      = -1;
+    private JSONObject perfPhases; // latest dcl/fp/fcp/load, ms from navigation start
+
+    // --- Startup ---
+    private long surfaceCreatedMs = -1;
+    private long prepareStartMs   = -1;
+    private long prepareEndMs     = -1;
+    private long firstFrameMs     = -1;
+
+    // --- Stalls (MEDIA_INFO_BUFFERING_START / END) ---
+    private int  stallCount     = 0;
+    private long stallTotalMs   = 0;
+    private long stallStartedAt = -1;
+
+    // --- Resume after suspend() ---
+    private int  resumeCount         = 0;
+    private long resumeStartedAt     = -1;
+    private long lastResumeLatencyMs = -1;
+    private long maxResumeLatencyMs  = -1;
+
+    public void setPlayable(boolean playable) { this.isPlayable = playable; }
+
+    public void setRendition(JSONObject rendition) { this.rendition = rendition; }
+
+    public void setPlayablePreloaded(boolean preloaded) { this.playablePreloaded = preloaded; }
+
+    public void setWebViewCreation(long createMs, boolean warm)
+    {
+        this.webViewCreateMs = createMs;
+        this.webViewWarm = warm;
+    }
+
+    /** One renderer loss; {@code recovering} = the playable is reloaded rather than failed. */
+    public void addRendererGone(boolean crashed, boolean recovering)
+    {
+        rendererGone++;
+        if (crashed) rendererCrashes++;
+        if (recovering) rendererRecovered++;
+    }
+
+    /** Folds one probe window into the totals. Malformed samples are ignored. */
+    public void addPlayablePerfSample(String sampleJson)
+    {
+        try
+        {
+            JSONObject s = new JSONObject(sampleJson);
+            long win = s.getLong("win");
+            long frames = s.getLong("frames");
+            if (win <= 0 || frames < 0) return;
+            double fps = frames * 1000.0 / win;
+            perfWindows++;
+            perfFrames   += frames;
+            perfWindowMs += win;
+            perfMinFps = perfMinFps < 0 ? fps : Math.min(perfMinFps, fps);
+            perfSlowFrames  += s.optInt("slow");
+            perfWorstFrameMs = Math.max(perfWorstFrameMs, s.optLong("worst", -1));
+            perfLongTasks   += s.optInt("longTasks");
+            perfLongTaskMs  += s.optLong("longTaskMs");
+            perfHeapMax      = Math.max(perfHeapMax, s.optLong("heap", -1));
+            JSONObject phases = new JSONObject();
+            phases.put("domContentLoadedMs", s.optLong("dcl", -1));
+            phases.put("firstPaintMs",       s.optLong("fp", -1));
+            phases.put("firstContentfulPaintMs", s.optLong("fcp", -1));
+            phases.put("loadMs",             s.optLong("load", -1));
+            perfPhases = phases;
+        }
+        catch (JSONException e)
+        {
+            Log.w(TAG, "Bad perf sample: " + e.getMessage());
+        }
+    }
+
+    /** First time the video surface becomes available. Later re-creations are ignored. */
+    public void markSurfaceCreated()
+    {
+        if (surfaceCreatedMs < 0) surfaceCreatedMs = now();
+    }
+
+    /** Start of the initial prepare (setVideoPath / HTML load). Re-prepares count as resumes. */
+    public void markPrepareStart()
+    {
+        if (prepareStartMs < 0) prepareStartMs = now();
+    }
+
+    public void markPrepareEnd()
+    {
+        if (prepareStartMs >= 0 && prepareEndMs < 0) prepareEndMs = now();
+    }
+
+    /**
+     * First decoded frame on screen. Also closes an in-flight resume measurement — the frame
+     * after a re-prepare is what ends the black screen the user sees on return.
+     */
+    public void markFirstFrame()
+    {
+        long t = now();
+        if (firstFrameMs < 0) firstFrameMs = t;
+        if (resumeStartedAt >= 0)
+        {
+            lastResumeLatencyMs = t - resumeStartedAt;
+            maxResumeLatencyMs  = Math.max(maxResumeLatencyMs, lastResumeLatencyMs);
+            resumeStartedAt = -1;
+            Log.d(TAG, "resume latency=" + lastResumeLatencyMs + "ms");
+        }
+    }
+
+    public void markStallStart()
+    {
+        if (stallStartedAt >= 0) return; // already stalled — duplicate BUFFERING_START
+        stallCount++;
+        stallStartedAt = now();
+    }
+
+    public void markStallEnd()
+    {
+        if (stallStartedAt < 0) return;
+        stallTotalMs += now() - stallStartedAt;
+        stallStartedAt = -1;
+    }
+
+    /** Resume from a suspended (released) player — closed by the next {@link #markFirstFrame()}. */
+    public void markResumeStart()
+    {
+        resumeCount++;
+        resumeStartedAt = now();
+    }
+
+    /** Milliseconds from activity creation to the first frame, or -1 if none was rendered. */
+    public long getTimeToFirstFrameMs()
+    {
+        return firstFrameMs;
+    }
+
+    /** Serialises the current snapshot. Open stalls are closed at the time of the call. */
+    public String toJson()
+    {
+        markStallEnd();
+        JSONObject json = new JSONObject();
+        try
+        {
+            json.put("schema",              SCHEMA_VERSION);
+            json.put("isPlayable",          isPlayable);
+            json.put("totalMs",             now());
+            json.put("surfaceCreatedMs",    surfaceCreatedMs);
+            json.put("prepareStartMs",      prepareStartMs);
+            json.put("prepareEndMs",        prepareEndMs);
+            json.put("prepareDurationMs",   prepareEndMs >= 0 ? prepareEndMs - prepareStartMs : -1);
+            json.put("timeToFirstFrameMs",  firstFrameMs);
+            json.put("stallCount",          stallCount);
+            json.put("stallTotalMs",        stallTotalMs);
+            json.put("resumeCount",         resumeCount);
+            json.put("lastResumeLatencyMs", lastResumeLatencyMs);
+            json.put("maxResumeLatencyMs",  maxResumeLatencyMs);
+            if (rendition != null) json.put("rendition", rendition);
+            if (isPlayable) json.put("playablePreloaded", playablePreloaded);
+            if (perfWindows > 0) json.put("playablePerf", playablePerfJson());
+            if (rendererGone > 0)
+            {
+                JSONObject renderer = new JSONObject();
+                renderer.put("gone",      rendererGone);
+                renderer.put("crashes",   rendererCrashes);
+                renderer.put("recovered", rendererRecovered);
+                json.put("rendererGone", renderer);
+            }
+            if (webViewCreateMs >= 0)
+            {
+                json.put("webViewCreateMs", webViewCreateMs);
+                json.put("webViewWarm",     webViewWarm);
+            }
+        }
+        catch (JSONException e)
+        {
+            Log.w(TAG, "toJson failed: " + e.getMessage());
+        }
+        return json.toString();
+    }
+
+    private JSONObject playablePerfJson() throws JSONException
+    {
+        double avgFps = perfWindowMs > 0 ? perfFrames * 1000.0 / perfWindowMs : 0;
+        JSONObject perf = new JSONObject();
+        perf.put("windows",        perfWindows);
+        perf.put("sampledMs",      perfWindowMs);
+        perf.put("avgFps",         Math.round(avgFps * 10) / 10.0);
+        perf.put("minWindowFps",   Math.round(perfMinFps * 10) / 10.0);
+        perf.put("slowFrames",     perfSlowFrames);
+        perf.put("worstFrameMs",   perfWorstFrameMs);
+        perf.put("longTasks",      perfLongTasks);
+        perf.put("longTaskMs",     perfLongTaskMs);
+        perf.put("jsHeapMaxBytes", perfHeapMax);
+        perf.put("belowFpsFloor",  avgFps < PLAYABLE_FPS_FLOOR);
+        if (perfPhases != null) perf.put("phases", perfPhases);
+        return perf;
+    }
+
+    private long now()
+    {
+        return SystemClock.elapsedRealtime() - createdAt;
+    }
+}
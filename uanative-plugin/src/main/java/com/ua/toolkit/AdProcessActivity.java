@@ -0,0 +1,47 @@
+package com.ua.toolkit;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+/**
+ * {@link AdActivity} declared with {@code android:process=":ads"}; started by
+ * {@link AdProcessLauncher}. Callbacks go back to the game over the launcher's ResultReceiver.
+ * Once the last ad in the process is gone, the process exits so the renderer and heap are
+ * reclaimed at once.
+ */
+public class AdProcessActivity extends AdActivity {
+    private static final String TAG = "UA/AdProcessActivity";
+    private static final long EXIT_DELAY_MS = 1_000; // lets the slide-out animation finish
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        AdProcessLauncher.useIsolatedDataDirectory(); // before anything here creates a WebView
+        if (savedInstanceState == null) {
+            // Recreation keeps the existing callback; if this process was killed it is null and
+            // AdActivity finishes the stale ad, as it does in-process.
+            ResultReceiver receiver = getIntent().getParcelableExtra(AdProcessLauncher.EXTRA_RESULT_RECEIVER);
+            callback = receiver != null ? new AdProcessLauncher.RemoteCallback(receiver) : null;
+        }
+        super.onCreate(savedInstanceState);
+    }
+
+    @Override
+    boolean ownsCreativeCache() {
+        return false;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (!isFinishing()) return;
+        new Handler(Looper.getMainLooper()).postDelayed(() -> {
+            if (isAdShowing()) return; // another ad started in this process meanwhile
+            Log.d(TAG, "Ad finished — exiting the ads process");
+            Process.killProcess(Process.myPid());
+        }, EXIT_DELAY_MS);
+    }
+}
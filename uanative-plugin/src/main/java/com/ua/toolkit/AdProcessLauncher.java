@@ -0,0 +1,306 @@
+package com.ua.toolkit;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.os.ResultReceiver;
+import android.util.Log;
+import android.webkit.WebView;
+
+import com.ua.toolkit.cache.CreativeCache;
+import com.ua.toolkit.cache.CreativeVerifier;
+import com.ua.toolkit.media.VideoRendition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows ads in the separate {@code ":ads"} process ({@link AdProcessActivity}) instead of the
+ * game's.
+ *
+ * A playable's Chromium renderer and the ad UI then don't share a heap with Unity, and when the
+ * ad ends the process exits, so all of its memory is reclaimed at once instead of waiting for
+ * GC and renderer teardown. A crash in the ad doesn't take the game down either. It arrives as
+ * {@code onAdFailed("Ad process died")}.
+ *
+ * Unity passes the same Intent extras it would give AdActivity:
+ * <pre>
+ *   AdProcessLauncher.show(activity, intent, callbackProxy);   // instead of AdActivity.callback = …
+ *   AdProcessLauncher.dismiss(activity);                       // instead of AdActivity.dismissAd()
+ * </pre>
+ * Callbacks come back over a {@link ResultReceiver} on the game's main thread, in the same
+ * order as in-process. The ads process answers with a {@link Messenger} that dismiss requests
+ * go back over, so dismissing never starts an activity (or a cold process). The game process
+ * keeps the creative pinned in CreativeCache for the duration, and evicts it if the ad process
+ * reports an integrity failure. Playable builds also stay in the game process; the ads process
+ * only serves artifacts that already exist.
+ *
+ * Trade-off: the {@code :ads} process starts cold for each ad, and it has its own WebView data
+ * directory. So PlayablePreloader and WebViewWarmUp in the game process don't help these ads.
+ */
+public final class AdProcessLauncher
+{
+    private static final String TAG = "UA/AdProcessLauncher";
+
+    static final String EXTRA_RESULT_RECEIVER = "UA_RESULT_RECEIVER";
+    static final String WEBVIEW_DATA_SUFFIX = "ua_ads";
+
+    // ResultReceiver codes: ads process → game process
+    static final int CODE_ATTACHED = 0; // KEY_TOKEN: the ads process's control Messenger binder
+    static final int CODE_STARTED  = 1;
+    static final int CODE_CLICKED  = 2;
+    static final int CODE_FINISHED = 3; // KEY_SUCCESS
+    static final int CODE_FAILED   = 4; // KEY_TEXT: reason
+    static final int CODE_FEEDBACK = 5; // KEY_TEXT: reason
+    static final int CODE_METRICS  = 6; // KEY_TEXT: metrics JSON
+
+    static final String KEY_TOKEN   = "token";
+    static final String KEY_SUCCESS = "success";
+    static final String KEY_TEXT    = "text";
+
+    // Messenger what codes: game process → ads process
+    static final int MSG_DISMISS = 1;
+
+    private static boolean dataDirectorySet = false;
+    private static Receiver active; // the ad shown last, until it finishes; main thread
+
+    private AdProcessLauncher() { }
+
+    /**
+     * Starts {@link AdProcessActivity} with the extras from {@code adIntent}. Main thread.
+     *
+     * @param adIntent Intent carrying the AdActivity extras (VIDEO_PATH, IS_PLAYABLE, …)
+     * @param callback Receives the ad's callbacks on the main thread
+     */
+    public static void show(Activity activity, Intent adIntent, AdCallback callback)
+    {
+        Context app = activity.getApplicationContext();
+        Intent intent = new Intent(activity, AdProcessActivity.class);
+        if (adIntent.getExtras() != null) intent.putExtras(adIntent.getExtras());
+        Receiver receiver = new Receiver(app, callback, pin(app, adIntent));
+        intent.putExtra(EXTRA_RESULT_RECEIVER, receiver);
+        active = receiver;
+        activity.startActivity(intent);
+    }
+
+    /**
+     * Closes the ad shown by {@link #show}, reporting {@code onAdFinished(false)}. A no-op when
+     * no ad is showing. Main thread.
+     */
+    public static void dismiss(Activity activity)
+    {
+        if (active == null)
+        {
+            Log.d(TAG, "dismiss: no ad in the ads process");
+            return;
+        }
+        active.requestDismiss();
+    }
+
+    /**
+     * Gives this process its own WebView data directory; Android 9+ refuses to share one
+     * between processes. Must run before the process creates its first WebView.
+     */
+    static void useIsolatedDataDirectory()
+    {
+        if (dataDirectorySet || Build.VERSION.SDK_INT < Build.VERSION_CODES.P) return;
+        dataDirectorySet = true;
+        try
+        {
+            WebView.setDataDirectorySuffix(WEBVIEW_DATA_SUFFIX);
+        }
+        catch (IllegalStateException e)
+        {
+            Log.w(TAG, "WebView already initialized in the ads process: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pins VIDEO_PATH and every rendition; the ads process picks one and can't pin it itself.
+     * The cache opens and pins on its own thread.
+     */
+    private static CreativeCache.Pin pin(Context app, Intent adIntent)
+    {
+        List<String> paths = new ArrayList<>();
+        paths.add(adIntent.getStringExtra("VIDEO_PATH"));
+        for (VideoRendition r : VideoRendition.parseList(adIntent.getStringExtra("VIDEO_RENDITIONS")))
+            paths.add(r.path);
+        return CreativeCache.pinPathsAsync(app, paths);
+    }
+
+    // --- Game process side ---
+
+    private static final class Receiver extends ResultReceiver
+    {
+        private final Context app;
+        private final AdCallback callback;
+        private final CreativeCache.Pin pin;
+        private Messenger control; // null until the ads process attaches
+        private boolean dismissRequested = false;
+        private boolean done = false;
+
+        Receiver(Context app, AdCallback callback, CreativeCache.Pin pin)
+        {
+            super(new Handler(Looper.getMainLooper()));
+            this.app = app;
+            this.callback = callback;
+            this.pin = pin;
+        }
+
+        @Override
+        protected void onReceiveResult(int code, Bundle data)
+        {
+            if (done) return;
+            switch (code)
+            {
+                case CODE_ATTACHED:
+                    IBinder token = data.getBinder(KEY_TOKEN);
+                    watch(token);
+                    if (token != null) control = new Messenger(token);
+                    if (dismissRequested) requestDismiss();
+                    break;
+                case CODE_STARTED:
+                    if (callback != null) callback.onAdStarted();
+                    break;
+                case CODE_CLICKED:
+                    if (callback != null) callback.onAdClicked();
+                    break;
+                case CODE_FEEDBACK:
+                    if (callback != null) callback.onAdFeedback(data.getString(KEY_TEXT));
+                    break;
+                case CODE_METRICS:
+                    try
+                    {
+                        if (callback != null) callback.onAdMetrics(data.getString(KEY_TEXT));
+                    }
+                    catch (RuntimeException e)
+                    {
+                        // Same contract as in-process: the terminal callback still follows.
+                        Log.e(TAG, "onAdMetrics threw", e);
+                    }
+                    break;
+                case CODE_FINISHED:
+                    end();
+                    if (callback != null) callback.onAdFinished(data.getBoolean(KEY_SUCCESS));
+                    break;
+                case CODE_FAILED:
+                    String reason = data.getString(KEY_TEXT);
+                    end();
+                    if (reason != null && reason.startsWith(AdActivity.INTEGRITY_FAILURE))
+                        CreativeVerifier.evict(app, reason.substring(AdActivity.INTEGRITY_FAILURE.length()));
+                    if (callback != null) callback.onAdFailed(reason);
+                    break;
+                default:
+                    Log.w(TAG, "Unknown result code " + code);
+            }
+        }
+
+        /** Sends the dismiss now, or once the ads process attaches if it hasn't yet. */
+        void requestDismiss()
+        {
+            if (done) return;
+            if (control == null)
+            {
+                dismissRequested = true;
+                return;
+            }
+            dismissRequested = false;
+            try
+            {
+                control.send(Message.obtain(null, MSG_DISMISS));
+            }
+            catch (RemoteException e)
+            {
+                Log.w(TAG, "dismiss: ads process is gone"); // its death recipient reports the failure
+            }
+        }
+
+        /** Reports a failure if the ads process dies before sending a terminal callback. */
+        private void watch(IBinder token)
+        {
+            if (token == null) return;
+            Handler main = new Handler(Looper.getMainLooper());
+            try
+            {
+                token.linkToDeath(() -> main.post(() ->
+                {
+                    if (done) return;
+                    Log.w(TAG, "Ads process died before the ad finished");
+                    end();
+                    if (callback != null) callback.onAdFailed("Ad process died");
+                }), 0);
+            }
+            catch (RemoteException e)
+            {
+                // Already dead — the death recipient would never fire.
+                main.post(() -> onReceiveResult(CODE_FAILED, text("Ad process died")));
+            }
+        }
+
+        private void end()
+        {
+            done = true;
+            if (active == this) active = null;
+            pin.release();
+        }
+    }
+
+    // --- Ads process side ---
+
+    /**
+     * AdCallback installed in the ads process; forwards each call to the game process and hands
+     * it a control Messenger. That binder's death tells the game the process is gone.
+     */
+    static final class RemoteCallback implements AdCallback
+    {
+        private final ResultReceiver receiver;
+        private final Messenger control = new Messenger(new Handler(Looper.getMainLooper(), msg ->
+        {
+            if (msg.what != MSG_DISMISS) return false;
+            Log.d(TAG, "Dismiss requested by the game process");
+            AdActivity.dismissAd();
+            return true;
+        }));
+
+        RemoteCallback(ResultReceiver receiver)
+        {
+            this.receiver = receiver;
+            Bundle b = new Bundle();
+            b.putBinder(KEY_TOKEN, control.getBinder());
+            receiver.send(CODE_ATTACHED, b);
+        }
+
+        @Override public void onAdStarted() { receiver.send(CODE_STARTED, null); }
+
+        @Override public void onAdClicked() { receiver.send(CODE_CLICKED, null); }
+
+        @Override
+        public void onAdFinished(boolean success)
+        {
+            Bundle b = new Bundle();
+            b.putBoolean(KEY_SUCCESS, success);
+            receiver.send(CODE_FINISHED, b);
+        }
+
+        @Override public void onAdFailed(String reason) { receiver.send(CODE_FAILED, text(reason)); }
+
+        @Override public void onAdFeedback(String reason) { receiver.send(CODE_FEEDBACK, text(reason)); }
+
+        @Override public void onAdMetrics(String metricsJson) { receiver.send(CODE_METRICS, text(metricsJson)); }
+    }
+
+    private static Bundle text(String value)
+    {
+        Bundle b = new Bundle();
+        b.putString(KEY_TEXT, value);
+        return b;
+    }
+}
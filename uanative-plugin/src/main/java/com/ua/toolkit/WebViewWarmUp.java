@@ -0,0 +1,133 @@
+package com.ua.toolkit;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Loads the Chromium WebView provider before the first ad needs it.
+ *
+ * The first {@code new WebView()} in a process loads and starts the provider, which takes
+ * 200–600 ms on the main thread. Without warm-up that cost lands in AdActivity.onCreate for
+ * playables, or on the click path for HeadlessWebViewResolver. {@link #warmUp} schedules one
+ * throwaway WebView on the main looper's next idle slot, so the game's frames aren't delayed.
+ * Later constructions through {@link #create} are then warm.
+ *
+ * Unity calls {@code WebViewWarmUp.warmUp(activity)} once at boot; {@link #getReport()} returns
+ * the timings as JSON.
+ */
+public final class WebViewWarmUp
+{
+    private static final String TAG = "UA/WebViewWarmUp";
+
+    private static final int NOT_STARTED = 0;
+    private static final int SCHEDULED   = 1;
+    private static final int WARM        = 2;
+
+    // Main thread only, apart from the volatile reads in getReport().
+    private static volatile int state = NOT_STARTED;
+    private static volatile long warmUpMs = -1;
+    private static volatile long lastCreateMs = -1;
+    private static volatile boolean lastCreateWarm = false;
+
+    private WebViewWarmUp() { }
+
+    /** Schedules provider loading for the next idle moment on the main thread. Safe to call repeatedly. */
+    public static void warmUp(Context context)
+    {
+        Context app = context.getApplicationContext();
+        new Handler(Looper.getMainLooper()).post(() ->
+        {
+            if (state != NOT_STARTED) return;
+            state = SCHEDULED;
+            Looper.myQueue().addIdleHandler(() ->
+            {
+                if (state == SCHEDULED) runWarmUp(app);
+                return false; // one-shot
+            });
+        });
+    }
+
+    public static boolean isWarm()
+    {
+        return state == WARM;
+    }
+
+    /**
+     * Constructs a WebView and records whether the provider was already warm. Main thread only.
+     * A cold construction here also counts as the warm-up.
+     */
+    public static WebView create(Context context)
+    {
+        boolean warm = state == WARM;
+        long start = SystemClock.elapsedRealtime();
+        WebView webView = new WebView(context);
+        lastCreateMs = SystemClock.elapsedRealtime() - start;
+        lastCreateWarm = warm;
+        if (!warm)
+        {
+            state = WARM;
+            Log.w(TAG, "Cold WebView construction took " + lastCreateMs + "ms — call warmUp() at boot");
+        }
+        else
+        {
+            Log.d(TAG, "Warm WebView construction took " + lastCreateMs + "ms");
+        }
+        return webView;
+    }
+
+    /** Duration of the most recent {@link #create}, or -1. */
+    public static long getLastCreateMs()
+    {
+        return lastCreateMs;
+    }
+
+    public static boolean wasLastCreateWarm()
+    {
+        return lastCreateWarm;
+    }
+
+    /** {@code {"warm":…, "warmUpMs":…, "lastCreateMs":…, "lastCreateWarm":…}} */
+    public static String getReport()
+    {
+        JSONObject json = new JSONObject();
+        try
+        {
+            json.put("warm", isWarm());
+            json.put("warmUpMs", warmUpMs);
+            json.put("lastCreateMs", lastCreateMs);
+            json.put("lastCreateWarm", lastCreateWarm);
+        }
+        catch (JSONException e)
+        {
+            Log.w(TAG, "getReport failed: " + e.getMessage());
+        }
+        return json.toString();
+    }
+
+    private static void runWarmUp(Context app)
+    {
+        long start = SystemClock.elapsedRealtime();
+        try
+        {
+            // Construction loads the provider and starts Chromium; the instance itself is not needed.
+            WebView webView = new WebView(app);
+            webView.destroy();
+            warmUpMs = SystemClock.elapsedRealtime() - start;
+            state = WARM;
+            Log.d(TAG, "WebView provider warmed up in " + warmUpMs + "ms");
+        }
+        catch (RuntimeException e)
+        {
+            // No WebView provider (disabled or updating) — leave it to the real construction to fail.
+            state = NOT_STARTED;
+            Log.w(TAG, "WebView warm-up failed: " + e.getMessage());
+        }
+    }
+}
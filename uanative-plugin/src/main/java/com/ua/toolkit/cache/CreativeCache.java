@@ -0,0 +1,638 @@
+package com.ua.toolkit.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Native creative store with a byte budget, LRU + expiry eviction and a crash-safe journal.
+ *
+ * Files live in {@code noBackupFilesDir/ua_creatives}, named by a hash of the caller's key.
+ * Every mutation is appended to {@code journal} and replayed on start:
+ * <pre>
+ *   PUT  key file size expiresAt lastAccess
+ *   READ key time
+ *   DEL  key
+ * </pre>
+ * A file is written to {@code <name>.tmp}, forced to disk and renamed into place before its PUT
+ * line is appended. After a crash, a file without a PUT is an orphan and is deleted on the next
+ * start, and a PUT whose file is missing or the wrong size is dropped. The journal is compacted
+ * to one PUT per entry when it grows.
+ *
+ * Sidecars are files named {@code <entry file>.<suffix>} that other components derive from a
+ * creative, such as AdPosterFrame's {@code .poster.<ms>.jpg}. They belong to their entry: their
+ * bytes count toward the budget, they are deleted with it, and the start-up sweep keeps them.
+ * Writers report new sidecars through {@link #sidecarWritten}.
+ *
+ * Pins are in-memory reference counts. A pinned entry is never evicted or expired, so an ad on
+ * screen keeps its creative. Pins don't survive the process, which is the point.
+ *
+ * Opening replays the journal and scans the directory, so it is kept off the main thread:
+ * {@link #openAsync} at start-up, and ads pin through {@link #pinPathsAsync}, which runs on the
+ * cache thread. Work posted there runs in order, so a release or eviction posted after a pin
+ * always sees it.
+ *
+ * Unity calls {@code openAsync(activity)} early, then {@code getInstance(activity)} and
+ * {@code get/put/pin/unpin/remove} from a worker thread; all methods are thread-safe. put()
+ * copies the file, so call it off the main thread.
+ */
+public final class CreativeCache
+{
+    private static final String TAG = "UA/CreativeCache";
+    private static final String DIR_NAME       = "ua_creatives";
+    private static final String JOURNAL        = "journal";
+    private static final String JOURNAL_TMP    = "journal.tmp";
+    private static final String TMP_SUFFIX     = ".tmp";
+    static final String PART_SUFFIX            = ".part"; // in-flight downloads — kept across restarts
+    static final String PART_META_SUFFIX       = PART_SUFFIX + ".meta";
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int  COMPACT_MIN_OPS   = 500;
+
+    private static CreativeCache instance;
+
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(r, "UA-CreativeCache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Entry
+    {
+        final String key;
+        final String fileName;
+        final long   size;
+        final long   expiresAt; // epoch ms, 0 = never
+        long lastAccess;
+        long sidecarBytes; // not journaled — rescanned on open
+
+        Entry(String key, String fileName, long size, long expiresAt, long lastAccess)
+        {
+            this.key        = key;
+            this.fileName   = fileName;
+            this.size       = size;
+            this.expiresAt  = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isExpired(long now) { return expiresAt > 0 && now >= expiresAt; }
+
+        long totalSize() { return size + sidecarBytes; }
+    }
+
+    private final File dir;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long totalBytes = 0;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // LRU order
+    private final Map<String, Integer> pins = new HashMap<>();
+    private FileChannel journal;
+    private int journalOps = 0;
+
+    private CreativeCache(File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * Process-wide cache, created (and its journal replayed) on first use. The first call does
+     * disk I/O; call {@link #openAsync} early so it doesn't land on the main thread.
+     */
+    public static synchronized CreativeCache getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            File dir = new File(context.getApplicationContext().getNoBackupFilesDir(), DIR_NAME);
+            if (!dir.isDirectory() && !dir.mkdirs()) Log.w(TAG, "Could not create " + dir);
+            instance = new CreativeCache(dir);
+            instance.open();
+        }
+        return instance;
+    }
+
+    /** Opens the cache on the cache thread, so later {@link #getInstance} calls return at once. */
+    public static void openAsync(Context context)
+    {
+        Context app = context.getApplicationContext();
+        io.execute(() -> getInstance(app));
+    }
+
+    /**
+     * Pins whichever of {@code paths} are cache entries, on the cache thread. Nulls and files
+     * outside the cache are skipped. Main-thread safe.
+     *
+     * @return handle whose {@link Pin#release} drops these pins again
+     */
+    public static Pin pinPathsAsync(Context context, List<String> paths)
+    {
+        Pin pin = new Pin(context.getApplicationContext());
+        List<String> copy = new ArrayList<>(paths);
+        io.execute(() ->
+        {
+            CreativeCache cache = getInstance(pin.app);
+            for (String path : copy)
+            {
+                String key = path != null ? cache.keyForPath(path) : null;
+                if (key != null && cache.pin(key)) pin.keys.add(key);
+            }
+        });
+        return pin;
+    }
+
+    /** Pins taken by {@link #pinPathsAsync}. */
+    public static final class Pin
+    {
+        private final Context app;
+        private final List<String> keys = new ArrayList<>(); // cache thread only
+        private boolean released; // main thread
+
+        private Pin(Context app)
+        {
+            this.app = app;
+        }
+
+        /** Unpins on the cache thread, where the trim the pins held back also runs. Idempotent. */
+        public void release()
+        {
+            if (released) return;
+            released = true;
+            io.execute(() ->
+            {
+                CreativeCache cache = getInstance(app);
+                for (String key : keys) cache.unpin(key);
+                keys.clear();
+            });
+        }
+    }
+
+    /** Runs {@code task} on the cache thread with the open cache, after anything posted earlier. */
+    static void post(Context context, Consumer<CreativeCache> task)
+    {
+        Context app = context.getApplicationContext();
+        io.execute(() -> task.accept(getInstance(app)));
+    }
+
+    /**
+     * Tells the cache a sidecar was written (or replaced) next to one of its files, so it is
+     * counted toward the budget. A no-op for files outside the cache, or before the cache is
+     * first opened — open() counts whatever is on disk by then.
+     */
+    public static void sidecarWritten(File sidecar)
+    {
+        CreativeCache cache;
+        synchronized (CreativeCache.class) { cache = instance; }
+        if (cache != null && sidecar != null) cache.recountSidecars(sidecar);
+    }
+
+    // --- Public API ---
+
+    /** Byte budget for all entries. Shrinking it evicts immediately (pinned entries excepted). */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = Math.max(0, maxBytes);
+        trim();
+    }
+
+    public synchronized long getSizeBytes()
+    {
+        return totalBytes;
+    }
+
+    /** @return the absolute path of a live entry, or null if absent or expired */
+    public synchronized String get(String key)
+    {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        File file = new File(dir, e.fileName);
+        if (!file.isFile() || file.length() != e.size)
+        {
+            Log.w(TAG, "Entry " + key + " lost its file — dropping");
+            removeEntry(e, false);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (e.isExpired(now) && !isPinned(key))
+        {
+            Log.d(TAG, "Entry " + key + " expired");
+            removeEntry(e, true);
+            return null;
+        }
+        e.lastAccess = now;
+        appendJournal("READ\t" + encode(key) + "\t" + now, false);
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * Copies {@code sourcePath} into the cache under {@code key}, replacing any previous version.
+     *
+     * @param ttlSeconds lifetime from now; {@code <= 0} never expires
+     * @return the cached file's absolute path, or null if the copy failed
+     */
+    public String put(String key, String sourcePath, long ttlSeconds)
+    {
+        if (key == null || key.isEmpty() || sourcePath == null) return null;
+        File source = new File(sourcePath);
+        File target = fileFor(key, source.getName());
+        File tmp = new File(target.getPath() + TMP_SUFFIX);
+        try
+        {
+            copy(source, tmp);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "put " + key + " failed: " + e.getMessage());
+            tmp.delete();
+            return null;
+        }
+        return commit(key, tmp, target, ttlSeconds);
+    }
+
+    /** Adds a reference that keeps {@code key} from eviction and expiry. @return false if absent */
+    public synchronized boolean pin(String key)
+    {
+        if (!entries.containsKey(key)) return false;
+        Integer count = pins.get(key);
+        pins.put(key, count == null ? 1 : count + 1);
+        return true;
+    }
+
+    public synchronized void unpin(String key)
+    {
+        Integer count = pins.get(key);
+        if (count == null) return;
+        if (count <= 1) pins.remove(key);
+        else pins.put(key, count - 1);
+        trim(); // an over-budget cache may have been waiting on this pin
+    }
+
+    /** Deletes {@code key}. Pinned entries are left alone. @return true if it was removed */
+    public synchronized boolean remove(String key)
+    {
+        Entry e = entries.get(key);
+        if (e == null || isPinned(key)) return false;
+        removeEntry(e, true);
+        return true;
+    }
+
+    /**
+     * Key of the entry stored at {@code path}, or null if the file isn't in this cache. Lets
+     * AdActivity pin whatever path Unity passed without knowing the key.
+     */
+    public synchronized String keyForPath(String path)
+    {
+        if (path == null) return null;
+        File file = new File(path);
+        if (!dir.equals(file.getParentFile())) return null;
+        for (Entry e : entries.values())
+        {
+            if (e.fileName.equals(file.getName())) return e.key;
+        }
+        return null;
+    }
+
+    // --- Package API (downloader) ---
+
+    File getDirectory()
+    {
+        return dir;
+    }
+
+    /** Stable in-progress download file for {@code key}; survives restarts so downloads can resume. */
+    File partFileFor(String key, String extensionHint)
+    {
+        return new File(fileFor(key, extensionHint).getPath() + PART_SUFFIX);
+    }
+
+    /** Moves a fully written file in this directory into the cache under {@code key}. */
+    String commitFile(String key, File completed, long ttlSeconds)
+    {
+        return commit(key, completed, fileFor(key, completed.getName().replace(PART_SUFFIX, "")), ttlSeconds);
+    }
+
+    /**
+     * Re-files the entry under {@code newKey} by renaming, keeping its expiry. Any entry already
+     * under {@code newKey} is replaced. @return the new path, or null if absent or pinned
+     */
+    synchronized String rekey(String key, String newKey)
+    {
+        Entry e = entries.get(key);
+        if (e == null || isPinned(key)) return null;
+        File file = new File(dir, e.fileName);
+        removeEntry(e, false);
+        long ttlSeconds = e.expiresAt > 0 ? Math.max(1, (e.expiresAt - System.currentTimeMillis()) / 1000) : 0;
+        return commit(newKey, file, fileFor(newKey, e.fileName), ttlSeconds);
+    }
+
+    // --- Internals ---
+
+    private synchronized void recountSidecars(File sidecar)
+    {
+        if (!dir.equals(sidecar.getParentFile())) return;
+        for (Entry e : entries.values())
+        {
+            if (!isSidecarOf(sidecar.getName(), e.fileName)) continue;
+            totalBytes -= e.sidecarBytes;
+            e.sidecarBytes = 0;
+            for (File f : sidecarsOf(e.fileName)) e.sidecarBytes += f.length();
+            totalBytes += e.sidecarBytes;
+            trim();
+            return;
+        }
+    }
+
+    /** {@code <fileName>.<suffix>}, excluding the cache's own temp and download files. */
+    private static boolean isSidecarOf(String name, String fileName)
+    {
+        return name.length() > fileName.length() + 1 && name.startsWith(fileName)
+                && name.charAt(fileName.length()) == '.'
+                && !name.endsWith(TMP_SUFFIX) && !name.endsWith(PART_SUFFIX)
+                && !name.endsWith(PART_META_SUFFIX);
+    }
+
+    private File[] sidecarsOf(String fileName)
+    {
+        File[] files = dir.listFiles((d, name) -> isSidecarOf(name, fileName));
+        return files != null ? files : new File[0];
+    }
+
+    private void deleteSidecars(String fileName)
+    {
+        for (File f : sidecarsOf(fileName)) f.delete();
+    }
+
+    private synchronized String commit(String key, File written, File target, long ttlSeconds)
+    {
+        if (!written.renameTo(target))
+        {
+            Log.w(TAG, "rename failed for " + target.getName());
+            written.delete();
+            return null;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null)
+        {
+            totalBytes -= previous.totalSize();
+            if (!previous.fileName.equals(target.getName())) new File(dir, previous.fileName).delete();
+            deleteSidecars(previous.fileName);
+        }
+        deleteSidecars(target.getName()); // derived from whatever was there before — stale now
+        long now = System.currentTimeMillis();
+        Entry e = new Entry(key, target.getName(), target.length(),
+                ttlSeconds > 0 ? now + ttlSeconds * 1000 : 0, now);
+        entries.put(key, e);
+        totalBytes += e.size;
+        appendJournal(putLine(e), true);
+        Log.d(TAG, "Cached " + key + " (" + e.size + " bytes, total " + totalBytes + "/" + maxBytes + ")");
+        trim();
+        return target.getAbsolutePath();
+    }
+
+    /** Expired entries first, then least recently used, never pinned. */
+    private void trim()
+    {
+        long now = System.currentTimeMillis();
+        List<Entry> expired = new ArrayList<>();
+        for (Entry e : entries.values())
+        {
+            if (e.isExpired(now) && !isPinned(e.key)) expired.add(e);
+        }
+        for (Entry e : expired) removeEntry(e, true);
+
+        Iterator<Entry> lru = new ArrayList<>(entries.values()).iterator();
+        while (totalBytes > maxBytes && lru.hasNext())
+        {
+            Entry e = lru.next();
+            if (isPinned(e.key)) continue;
+            Log.d(TAG, "Evicting " + e.key + " (" + e.totalSize() + " bytes)");
+            removeEntry(e, true);
+        }
+        if (totalBytes > maxBytes) Log.w(TAG, "Over budget with only pinned entries left: " + totalBytes);
+    }
+
+    /** Sidecars always go; {@code deleteFile} only decides the entry's own file. */
+    private void removeEntry(Entry e, boolean deleteFile)
+    {
+        entries.remove(e.key);
+        pins.remove(e.key);
+        totalBytes -= e.totalSize();
+        if (deleteFile) new File(dir, e.fileName).delete();
+        deleteSidecars(e.fileName);
+        appendJournal("DEL\t" + encode(e.key), true);
+    }
+
+    private boolean isPinned(String key)
+    {
+        return pins.containsKey(key);
+    }
+
+    private void open()
+    {
+        replayJournal();
+
+        // Reconcile with the directory: drop entries whose file is gone, count sidecars of live
+        // entries, delete orphans (including sidecars of dropped entries) and temp files.
+        Map<String, Entry> live = new HashMap<>();
+        for (Entry e : new ArrayList<>(entries.values()))
+        {
+            File f = new File(dir, e.fileName);
+            if (f.isFile() && f.length() == e.size) live.put(e.fileName, e);
+            else { entries.remove(e.key); totalBytes -= e.size; }
+        }
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                String name = f.getName();
+                if (name.equals(JOURNAL) || live.containsKey(name) || name.endsWith(PART_SUFFIX)
+                        || name.endsWith(PART_META_SUFFIX)) continue;
+                Entry owner = ownerOf(name, live);
+                if (owner != null)
+                {
+                    owner.sidecarBytes += f.length();
+                    totalBytes += f.length();
+                    continue;
+                }
+                Log.d(TAG, "Deleting orphan " + name);
+                f.delete();
+            }
+        }
+        compactJournal();
+        Log.d(TAG, "Opened with " + entries.size() + " entries, " + totalBytes + " bytes");
+    }
+
+    /** The live entry {@code name} is a sidecar of, or null. */
+    private static Entry ownerOf(String name, Map<String, Entry> live)
+    {
+        for (int dot = name.indexOf('.'); dot > 0; dot = name.indexOf('.', dot + 1))
+        {
+            Entry e = live.get(name.substring(0, dot));
+            if (e != null && isSidecarOf(name, e.fileName)) return e;
+        }
+        return null;
+    }
+
+    private void replayJournal()
+    {
+        File file = new File(dir, JOURNAL);
+        if (!file.exists()) return;
+        List<String> lines;
+        try
+        {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Journal unreadable, starting empty: " + e.getMessage());
+            return;
+        }
+        for (String line : lines)
+        {
+            String[] f = line.split("\t");
+            try
+            {
+                switch (f[0])
+                {
+                    case "PUT":
+                    {
+                        Entry e = new Entry(decode(f[1]), f[2], Long.parseLong(f[3]), Long.parseLong(f[4]), Long.parseLong(f[5]));
+                        Entry old = entries.put(e.key, e);
+                        if (old != null) totalBytes -= old.size;
+                        totalBytes += e.size;
+                        break;
+                    }
+                    case "READ":
+                    {
+                        Entry e = entries.get(decode(f[1])); // get() also moves it to the LRU tail
+                        if (e != null) e.lastAccess = Long.parseLong(f[2]);
+                        break;
+                    }
+                    case "DEL":
+                    {
+                        Entry e = entries.remove(decode(f[1]));
+                        if (e != null) totalBytes -= e.size;
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // Torn last line from a crash mid-append — everything before it is intact.
+                Log.w(TAG, "Skipping malformed journal line");
+            }
+        }
+    }
+
+    /** Rewrites the journal as one PUT per entry, in LRU order, via temp file + rename. */
+    private void compactJournal()
+    {
+        closeJournal();
+        File tmp = new File(dir, JOURNAL_TMP);
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : entries.values()) sb.append(putLine(e)).append('\n');
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Journal compaction failed: " + e.getMessage());
+            tmp.delete();
+        }
+        if (tmp.exists() && !tmp.renameTo(new File(dir, JOURNAL))) tmp.delete();
+        journalOps = 0;
+    }
+
+    private void appendJournal(String line, boolean durable)
+    {
+        try
+        {
+            if (journal == null)
+            {
+                journal = FileChannel.open(new File(dir, JOURNAL).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buf = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) journal.write(buf);
+            if (durable) journal.force(false);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Journal append failed: " + e.getMessage());
+            closeJournal();
+        }
+        if (++journalOps > Math.max(COMPACT_MIN_OPS, entries.size() * 4)) compactJournal();
+    }
+
+    private void closeJournal()
+    {
+        if (journal == null) return;
+        try { journal.close(); } catch (IOException ignored) { }
+        journal = null;
+    }
+
+    private static String putLine(Entry e)
+    {
+        return "PUT\t" + encode(e.key) + "\t" + e.fileName + "\t" + e.size + "\t" + e.expiresAt + "\t" + e.lastAccess;
+    }
+
+    /** Hashed file name so arbitrary keys (URLs, ids with slashes) are safe; keeps the extension. */
+    private File fileFor(String key, String nameHint)
+    {
+        int dot = nameHint != null ? nameHint.lastIndexOf('.') : -1;
+        String ext = dot >= 0 && nameHint.length() - dot <= 6 ? nameHint.substring(dot) : "";
+        return new File(dir, sha256Hex(key).substring(0, 32) + ext);
+    }
+
+    private static void copy(File source, File target) throws IOException
+    {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            long size = in.size(), done = 0;
+            while (done < size) done += in.transferTo(done, size - done, out);
+            out.force(false);
+        }
+    }
+
+    static String sha256Hex(String value)
+    {
+        return CreativeDigest.toHex(CreativeDigest.newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String encode(String key)
+    {
+        try { return URLEncoder.encode(key, "UTF-8"); }
+        catch (UnsupportedEncodingException e) { throw new IllegalStateException(e); }
+    }
+
+    private static String decode(String value)
+    {
+        try { return URLDecoder.decode(value, "UTF-8"); }
+        catch (UnsupportedEncodingException e) { throw new IllegalStateException(e); }
+    }
+}
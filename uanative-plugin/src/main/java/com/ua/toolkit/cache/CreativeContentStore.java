@@ -0,0 +1,326 @@
+package com.ua.toolkit.cache;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Content-addressed layer over {@link CreativeCache}: one copy per distinct file, however many
+ * campaigns use it.
+ *
+ * Blobs are cache entries keyed {@code sha256:<hex>} of their bytes. Campaigns refer to them
+ * through aliases (any caller id, e.g. campaign + placement). The alias table lives in
+ * {@code noBackupFilesDir/ua_creative_aliases.json}. A blob's reference count is the number of
+ * aliases pointing at it. The blob is removed from the cache when its last alias is released.
+ *
+ * Inserting a file whose digest is already stored only adds an alias — nothing is copied. When
+ * the server's digest is known up front, {@link #fetch} skips the download entirely for content
+ * already on disk, and a download that doesn't match it is discarded. Hashing runs on a background
+ * thread; callbacks arrive on the main thread.
+ */
+public final class CreativeContentStore
+{
+    private static final String TAG = "UA/ContentStore";
+    private static final String ALIAS_FILE = "ua_creative_aliases.json";
+    private static final String BLOB_PREFIX = "sha256:";
+
+    private static CreativeContentStore instance;
+
+    private final Context context;
+    private final CreativeCache cache;
+    private final File aliasFile;
+    private final Map<String, String> aliases = new HashMap<>();  // alias -> digest
+    private final Map<String, Integer> refs = new HashMap<>();    // digest -> alias count
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(r, "UA-ContentStore");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private CreativeContentStore(Context context)
+    {
+        this.context = context;
+        this.cache = CreativeCache.getInstance(context);
+        this.aliasFile = new File(context.getNoBackupFilesDir(), ALIAS_FILE);
+        load();
+    }
+
+    public static synchronized CreativeContentStore getInstance(Context context)
+    {
+        if (instance == null) instance = new CreativeContentStore(context.getApplicationContext());
+        return instance;
+    }
+
+    static String blobKey(String digest)
+    {
+        return BLOB_PREFIX + digest.toLowerCase(Locale.ROOT);
+    }
+
+    // --- Public API ---
+
+    /** @return the file behind {@code alias}, or null if unknown or its blob was evicted */
+    public synchronized String resolve(String alias)
+    {
+        String digest = aliases.get(alias);
+        if (digest == null) return null;
+        String path = cache.get(blobKey(digest));
+        if (path == null)
+        {
+            Log.d(TAG, "Blob for " + alias + " is gone — dropping alias");
+            unbind(alias);
+            save();
+        }
+        return path;
+    }
+
+    /** @return the digest {@code alias} points at, or null */
+    public synchronized String getDigest(String alias)
+    {
+        return aliases.get(alias);
+    }
+
+    /** Number of aliases sharing the blob with {@code digest}. */
+    public synchronized int getRefCount(String digest)
+    {
+        Integer count = refs.get(digest.toLowerCase(Locale.ROOT));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Hashes {@code sourcePath} and stores it under {@code alias}, copying only if no identical
+     * file is stored yet. Blocking — {@link #putAsync} for the main thread.
+     *
+     * @return the stored file's path, or null on failure
+     */
+    public String put(String alias, String sourcePath, long ttlSeconds)
+    {
+        String digest;
+        try
+        {
+            digest = CreativeDigest.sha256(new File(sourcePath));
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not hash " + sourcePath + ": " + e.getMessage());
+            return null;
+        }
+        synchronized (this)
+        {
+            String path = cache.get(blobKey(digest));
+            if (path != null)
+            {
+                Log.d(TAG, alias + " deduplicated onto " + digest.substring(0, 12));
+            }
+            else
+            {
+                path = cache.put(blobKey(digest), sourcePath, ttlSeconds);
+                if (path == null) return null;
+                CreativeVerifier.record(context, new File(path), digest);
+            }
+            bind(alias, digest);
+            return path;
+        }
+    }
+
+    public void putAsync(String alias, String sourcePath, long ttlSeconds, CreativeDownloader.Callback callback)
+    {
+        worker.execute(() -> deliver(callback, alias, put(alias, sourcePath, ttlSeconds), "store failed"));
+    }
+
+    /**
+     * Makes {@code url} available under {@code alias}, downloading only if needed.
+     *
+     * @param sha256 digest advertised by the server, or null if unknown. With a digest, a stored
+     *               blob satisfies the request without any network traffic.
+     * @return the download task, or null if nothing had to be downloaded
+     */
+    public CreativeDownloader.Task fetch(String alias, String url, String sha256, long ttlSeconds,
+                                         CreativeDownloader.Callback callback)
+    {
+        if (sha256 != null)
+        {
+            synchronized (this)
+            {
+                String path = cache.get(blobKey(sha256));
+                if (path != null)
+                {
+                    bind(alias, sha256.toLowerCase(Locale.ROOT));
+                    deliver(callback, alias, path, null);
+                    return null;
+                }
+            }
+        }
+        String downloadKey = sha256 != null ? blobKey(sha256) : "url:" + url;
+        return CreativeDownloader.getInstance(context).download(downloadKey, url, ttlSeconds, new CreativeDownloader.Callback()
+        {
+            @Override
+            public void onDownloadComplete(String key, String path)
+            {
+                worker.execute(() ->
+                {
+                    try
+                    {
+                        deliver(callback, alias, adopt(alias, key, path, sha256), null);
+                    }
+                    catch (IOException e)
+                    {
+                        deliver(callback, alias, null, e.getMessage());
+                    }
+                });
+            }
+
+            @Override
+            public void onDownloadFailed(String key, String error)
+            {
+                deliver(callback, alias, null, error);
+            }
+        });
+    }
+
+    /** Drops {@code alias}; the blob is deleted when no alias references it any more. */
+    public synchronized void release(String alias)
+    {
+        String digest = unbind(alias);
+        if (digest == null) return;
+        save();
+        if (!refs.containsKey(digest) && cache.remove(blobKey(digest)))
+        {
+            Log.d(TAG, "Released last alias of " + digest.substring(0, 12) + " — blob removed");
+        }
+    }
+
+    // --- Internals ---
+
+    /**
+     * Files a freshly downloaded entry under its content digest, or drops it if already stored.
+     * A download that doesn't match the advertised digest is deleted rather than filed.
+     */
+    private String adopt(String alias, String downloadKey, String path, String expectedSha256) throws IOException
+    {
+        String digest;
+        try
+        {
+            digest = CreativeDigest.sha256(new File(path));
+        }
+        catch (IOException e)
+        {
+            cache.remove(downloadKey);
+            throw new IOException("Could not hash download for " + alias + ": " + e.getMessage());
+        }
+        if (expectedSha256 != null && !digest.equalsIgnoreCase(expectedSha256))
+        {
+            cache.remove(downloadKey);
+            throw new IOException("Digest mismatch for " + alias + ": expected " + expectedSha256 + ", got " + digest);
+        }
+        synchronized (this)
+        {
+            String key = blobKey(digest);
+            if (!key.equals(downloadKey))
+            {
+                String existing = cache.get(key);
+                if (existing != null)
+                {
+                    Log.d(TAG, alias + " downloaded a duplicate of " + digest.substring(0, 12) + " — dropping copy");
+                    cache.remove(downloadKey);
+                    path = existing;
+                }
+                else
+                {
+                    path = cache.rekey(downloadKey, key);
+                    if (path == null) throw new IOException("Could not file download for " + alias);
+                }
+            }
+            CreativeVerifier.record(context, new File(path), digest);
+            bind(alias, digest);
+            return path;
+        }
+    }
+
+    private void bind(String alias, String digest)
+    {
+        if (digest.equals(aliases.get(alias))) return;
+        unbind(alias);
+        aliases.put(alias, digest);
+        Integer count = refs.get(digest);
+        refs.put(digest, count == null ? 1 : count + 1);
+        save();
+    }
+
+    /** @return the digest the alias pointed at, or null */
+    private String unbind(String alias)
+    {
+        String digest = aliases.remove(alias);
+        if (digest == null) return null;
+        Integer count = refs.get(digest);
+        if (count == null || count <= 1) refs.remove(digest);
+        else refs.put(digest, count - 1);
+        return digest;
+    }
+
+    private void deliver(CreativeDownloader.Callback callback, String alias, String path, String error)
+    {
+        if (callback == null) return;
+        main.post(() ->
+        {
+            if (path != null) callback.onDownloadComplete(alias, path);
+            else callback.onDownloadFailed(alias, error != null ? error : "unknown");
+        });
+    }
+
+    private void load()
+    {
+        if (!aliasFile.exists()) return;
+        try
+        {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(aliasFile.toPath()), StandardCharsets.UTF_8));
+            for (Iterator<String> it = json.keys(); it.hasNext(); )
+            {
+                String alias = it.next();
+                String digest = json.getString(alias);
+                aliases.put(alias, digest);
+                Integer count = refs.get(digest);
+                refs.put(digest, count == null ? 1 : count + 1);
+            }
+            Log.d(TAG, "Loaded " + aliases.size() + " aliases over " + refs.size() + " blobs");
+        }
+        catch (IOException | JSONException e)
+        {
+            Log.w(TAG, "Alias table unreadable, starting empty: " + e.getMessage());
+            aliases.clear();
+            refs.clear();
+        }
+    }
+
+    /** Temp file + rename so a crash leaves the previous table intact. */
+    private void save()
+    {
+        File tmp = new File(aliasFile.getPath() + ".tmp");
+        try
+        {
+            Files.write(tmp.toPath(), new JSONObject(aliases).toString().getBytes(StandardCharsets.UTF_8));
+            if (!tmp.renameTo(aliasFile)) tmp.delete();
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not save alias table: " + e.getMessage());
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ua.toolkit.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of creative files, streamed over memory-mapped windows.
+ *
+ * Mapping lets the digest read straight from the page cache instead of copying through a heap
+ * buffer, and windowing keeps the address-space footprint bounded for large videos. Blocking —
+ * call from a background thread.
+ */
+final class CreativeDigest
+{
+    private static final long WINDOW = 8L * 1024 * 1024;
+
+    private CreativeDigest() { }
+
+    static String sha256(File file) throws IOException
+    {
+        MessageDigest digest = newSha256();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += WINDOW)
+            {
+                MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, size - pos));
+                digest.update(window);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest newSha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e); // SHA-256 is mandatory on Android
+        }
+    }
+
+    static String toHex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
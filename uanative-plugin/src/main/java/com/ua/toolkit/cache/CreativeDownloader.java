@@ -0,0 +1,572 @@
+package com.ua.toolkit.cache;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads creatives into {@link CreativeCache} as concurrent byte ranges.
+ *
+ * A probe request ({@code Range: bytes=0-0}) returns the total size and whether the server
+ * honours ranges. The target {@code .part} file in the cache directory is preallocated. Fixed-size
+ * ranges are then fetched by up to {@link #setMaxConnections(int)} workers from one bounded pool
+ * shared by all downloads, and each range is written in place with positional
+ * {@code FileChannel.write}. The cap also binds running downloads: a worker checks it before
+ * taking each range, so lowering it takes effect within one range. Completed ranges are recorded in a {@code .part.meta} sidecar, so an
+ * interrupted download resumes from what is already on disk. {@code If-Range} with the server's
+ * ETag guards against mixing two versions of a file. On completion the file is forced to disk and
+ * renamed into the cache.
+ *
+ * Servers without range support fall back to a single sequential stream.
+ * Callbacks are delivered on the main thread.
+ */
+public final class CreativeDownloader
+{
+    private static final String TAG = "UA/Downloader";
+    static final long RANGE_SIZE               = 2L * 1024 * 1024; // package-private for tests
+    private static final int  BUFFER_SIZE      = 64 * 1024;
+    private static final int  MAX_POOL_THREADS = 8;
+    private static final int  DEFAULT_CONNECTIONS = 4;
+    private static final int  RANGE_RETRIES    = 3;
+    private static final int  CONNECT_TIMEOUT_MS = 10_000;
+    private static final int  READ_TIMEOUT_MS    = 15_000;
+    private static final String META_SUFFIX   = ".meta";
+    private static final Integer RETIRE         = -1;
+
+    public interface Callback
+    {
+        /** @param path absolute path of the cached file */
+        void onDownloadComplete(String key, String path);
+        void onDownloadFailed(String key, String error);
+    }
+
+    /** Handle for an in-flight download. */
+    public static final class Task
+    {
+        final String key;
+        volatile boolean cancelled;
+        volatile Job job; // null until the probe is done, or for a single-stream download
+        Runnable start;   // set once by download()
+        Task successor;   // guarded by active — queued behind this cancelled task
+
+        Task(String key) { this.key = key; }
+
+        /** Stops the workers after their current read. Progress on disk is kept for a later resume. */
+        public void cancel() { cancelled = true; }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private static CreativeDownloader instance;
+
+    private final Context app; // the cache is looked up on worker threads, never opened here
+    private final ExecutorService pool;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Map<String, Task> active = new HashMap<>();
+    private volatile int maxConnections = DEFAULT_CONNECTIONS;
+
+    private CreativeDownloader(Context app)
+    {
+        this.app = app;
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_POOL_THREADS, MAX_POOL_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread t = new Thread(() ->
+            {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "UA-Download-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        pool = executor;
+    }
+
+    public static synchronized CreativeDownloader getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            CreativeCache.openAsync(context);
+            instance = new CreativeDownloader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Connections per download, 1–8. Running downloads follow: surplus workers stop after their
+     * current range, and a raised cap adds workers at once.
+     */
+    public void setMaxConnections(int connections)
+    {
+        maxConnections = Math.max(1, Math.min(MAX_POOL_THREADS, connections));
+        List<Job> running = new ArrayList<>();
+        synchronized (active)
+        {
+            for (Task task : active.values())
+            {
+                if (task.job != null) running.add(task.job);
+            }
+        }
+        for (Job job : running) addWorkers(job);
+    }
+
+    /**
+     * Starts (or resumes) downloading {@code url} into the cache under {@code key}. If the key is
+     * already being downloaded, the existing task is returned and {@code callback} is not called.
+     * If that download was cancelled, the new one waits until its last worker has left, so the
+     * two never write the same {@code .part} or {@code .part.meta}.
+     *
+     * @param ttlSeconds cache lifetime once complete; {@code <= 0} never expires
+     */
+    public Task download(String key, String url, long ttlSeconds, Callback callback)
+    {
+        Task task = new Task(key);
+        task.start = () -> start(task, url, ttlSeconds, callback);
+        synchronized (active)
+        {
+            Task last = active.get(key);
+            while (last != null && last.cancelled && last.successor != null) last = last.successor;
+            if (last != null && !last.cancelled) return last;
+            if (last != null)
+            {
+                last.successor = task; // finish() starts it
+                return task;
+            }
+            active.put(key, task);
+        }
+        pool.execute(task.start);
+        return task;
+    }
+
+    // --- Download state ---
+
+    private final class Job
+    {
+        final Task task;
+        final String url;
+        final long ttlSeconds;
+        final Callback callback;
+        final File part;
+        final File meta;
+        final long length;
+        final String etag;
+        final int rangeCount;
+        final BitSet done;                 // guarded by this
+        final ArrayDeque<Integer> pending; // guarded by this
+        int workers;                       // guarded by this
+        boolean finished;                  // guarded by this — the last worker has left
+        final AtomicLong bytesFetched = new AtomicLong();
+        final long startedAt = SystemClock.elapsedRealtime();
+        FileChannel channel;
+        volatile String error;
+
+        Job(Task task, String url, long ttlSeconds, Callback callback, File part, long length, String etag, BitSet done)
+        {
+            this.task = task;
+            this.url = url;
+            this.ttlSeconds = ttlSeconds;
+            this.callback = callback;
+            this.part = part;
+            this.meta = new File(part.getPath() + META_SUFFIX);
+            this.length = length;
+            this.etag = etag;
+            this.rangeCount = (int) ((length + RANGE_SIZE - 1) / RANGE_SIZE);
+            this.done = done;
+            this.pending = new ArrayDeque<>();
+            for (int i = 0; i < rangeCount; i++) if (!done.get(i)) pending.add(i);
+        }
+
+        /**
+         * The next range; null when the worker should leave (done or failed), {@link #RETIRE}
+         * when the cap was lowered. A retiring worker is counted out here, so it is never the
+         * last one and never completes the job.
+         */
+        synchronized Integer next()
+        {
+            if (task.cancelled || error != null) return null;
+            if (workers > maxConnections)
+            {
+                workers--;
+                return RETIRE;
+            }
+            return pending.poll();
+        }
+
+        /** @return true for the last worker out, which completes the job */
+        synchronized boolean leave()
+        {
+            finished = --workers == 0;
+            return finished;
+        }
+
+        /** Reserves worker slots up to the cap. @return how many workers to start */
+        synchronized int grow()
+        {
+            if (finished || task.cancelled || error != null) return 0;
+            int add = Math.min(maxConnections - workers, pending.size());
+            if (add <= 0) return 0;
+            workers += add;
+            return add;
+        }
+
+        /** Closes a job no worker ever joined. @return true if the caller must complete it */
+        synchronized boolean abandonIfIdle()
+        {
+            if (workers > 0) return false;
+            finished = true;
+            return true;
+        }
+
+        synchronized void markDone(int range)
+        {
+            done.set(range);
+            writeMeta(this);
+        }
+    }
+
+    private void start(Task task, String url, long ttlSeconds, Callback callback)
+    {
+        File part = CreativeCache.getInstance(app).partFileFor(task.key, Uri.parse(url).getLastPathSegment());
+        if (task.cancelled)
+        {
+            finish(task, part, ttlSeconds, callback, "cancelled"); // cancelled while queued
+            return;
+        }
+        try
+        {
+            Probe probe = probe(url);
+            if (!probe.acceptsRanges || probe.length <= 0)
+            {
+                Log.d(TAG, task.key + ": server has no range support — single stream");
+                downloadSequential(task, url, part);
+                finish(task, part, ttlSeconds, callback, null);
+                return;
+            }
+
+            BitSet done = readMeta(part, url, probe.length, probe.etag);
+            if (done == null)
+            {
+                done = new BitSet();
+                try (RandomAccessFile raf = new RandomAccessFile(part, "rw"))
+                {
+                    raf.setLength(probe.length); // preallocate — ranges land at their final offset
+                }
+            }
+            Job job = new Job(task, url, ttlSeconds, callback, part, probe.length, probe.etag, done);
+            writeMeta(job);
+            if (job.pending.isEmpty())
+            {
+                finish(task, part, ttlSeconds, callback, null);
+                return;
+            }
+            job.channel = FileChannel.open(part.toPath(), StandardOpenOption.WRITE);
+            Log.d(TAG, task.key + ": " + probe.length + " bytes, " + job.pending.size() + "/" + job.rangeCount
+                    + " ranges left, " + Math.min(maxConnections, job.pending.size()) + " connections");
+            task.job = job;
+            if (addWorkers(job) == 0 && job.abandonIfIdle())
+            {
+                // Cancelled before the first worker: no last worker will complete the job.
+                job.channel.close();
+                finish(task, part, ttlSeconds, callback, "cancelled");
+            }
+        }
+        catch (IOException e)
+        {
+            finish(task, part, ttlSeconds, callback, e.getMessage());
+        }
+    }
+
+    /** @return how many workers were started */
+    private int addWorkers(Job job)
+    {
+        int count = job.grow();
+        for (int i = 0; i < count; i++) pool.execute(() -> runWorker(job));
+        return count;
+    }
+
+    /** Pulls ranges until none are left; the last worker out completes the job. */
+    private void runWorker(Job job)
+    {
+        Integer range;
+        while ((range = job.next()) != null)
+        {
+            if (range.equals(RETIRE)) return;
+            IOException last = null;
+            for (int attempt = 0; attempt < RANGE_RETRIES && !job.task.cancelled; attempt++)
+            {
+                try
+                {
+                    fetchRange(job, range);
+                    job.markDone(range);
+                    last = null;
+                    break;
+                }
+                catch (IOException e)
+                {
+                    last = e;
+                    Log.w(TAG, job.task.key + ": range " + range + " attempt " + (attempt + 1) + " failed: " + e.getMessage());
+                }
+            }
+            if (last != null) job.error = last.getMessage();
+        }
+        if (!job.leave()) return;
+
+        try { job.channel.force(false); } catch (IOException e) { if (job.error == null) job.error = e.getMessage(); }
+        try { job.channel.close(); } catch (IOException ignored) { }
+
+        String error = job.error;
+        if (error == null && job.task.cancelled) error = "cancelled";
+        if (error == null)
+        {
+            long ms = Math.max(1, SystemClock.elapsedRealtime() - job.startedAt);
+            Log.d(TAG, job.task.key + ": fetched " + job.bytesFetched.get() + " bytes in " + ms + "ms ("
+                    + (job.bytesFetched.get() * 1000 / ms / 1024) + " KiB/s)");
+        }
+        finish(job.task, job.part, job.ttlSeconds, job.callback, error);
+    }
+
+    private void fetchRange(Job job, int range) throws IOException
+    {
+        long from = range * RANGE_SIZE;
+        long to = Math.min(job.length, from + RANGE_SIZE) - 1;
+        HttpURLConnection conn = open(job.url);
+        try
+        {
+            conn.setRequestProperty("Range", "bytes=" + from + "-" + to);
+            if (job.etag != null) conn.setRequestProperty("If-Range", job.etag);
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_PARTIAL)
+            {
+                // 200 with If-Range means the file changed on the server — progress is void.
+                if (code == HttpURLConnection.HTTP_OK) job.meta.delete();
+                throw new IOException("Range " + range + " got HTTP " + code);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = from;
+            try (InputStream in = conn.getInputStream())
+            {
+                int n;
+                while (position <= to && (n = in.read(buffer.array(), 0, (int) Math.min(BUFFER_SIZE, to - position + 1))) > 0)
+                {
+                    if (job.task.cancelled) throw new IOException("cancelled");
+                    buffer.clear();
+                    buffer.limit(n);
+                    while (buffer.hasRemaining()) position += job.channel.write(buffer, position);
+                    job.bytesFetched.addAndGet(n);
+                }
+            }
+            if (position != to + 1) throw new IOException("Range " + range + " short: " + (position - from) + " bytes");
+        }
+        finally
+        {
+            conn.disconnect();
+        }
+    }
+
+    private void downloadSequential(Task task, String url, File part) throws IOException
+    {
+        HttpURLConnection conn = open(url);
+        try
+        {
+            int code = conn.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + code);
+            try (InputStream in = conn.getInputStream();
+                 FileOutputStream out = new FileOutputStream(part))
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) > 0)
+                {
+                    if (task.cancelled) throw new IOException("cancelled");
+                    out.write(buffer, 0, n);
+                }
+                out.getFD().sync();
+            }
+        }
+        finally
+        {
+            conn.disconnect();
+        }
+    }
+
+    private void finish(Task task, File part, long ttlSeconds, Callback callback, String error)
+    {
+        String path = null;
+        if (error == null)
+        {
+            new File(part.getPath() + META_SUFFIX).delete();
+            path = CreativeCache.getInstance(app).commitFile(task.key, part, ttlSeconds);
+            if (path == null) error = "cache commit failed";
+        }
+        else if (!task.cancelled)
+        {
+            Log.w(TAG, task.key + ": download failed — " + error + " (progress kept for resume)");
+        }
+        // Only now has every worker of this task stopped writing: hand the key to a queued task.
+        Task next = null;
+        synchronized (active)
+        {
+            if (active.get(task.key) == task)
+            {
+                next = task.successor;
+                if (next != null) active.put(task.key, next);
+                else active.remove(task.key);
+            }
+        }
+        if (next != null) pool.execute(next.start);
+        if (callback == null) return;
+        String finalPath = path;
+        String finalError = error;
+        main.post(() ->
+        {
+            if (finalError == null) callback.onDownloadComplete(task.key, finalPath);
+            else callback.onDownloadFailed(task.key, finalError);
+        });
+    }
+
+    // --- HTTP ---
+
+    private static final class Probe
+    {
+        long length = -1;
+        boolean acceptsRanges;
+        String etag;
+    }
+
+    private static Probe probe(String url) throws IOException
+    {
+        HttpURLConnection conn = open(url);
+        try
+        {
+            conn.setRequestProperty("Range", "bytes=0-0");
+            int code = conn.getResponseCode();
+            Probe probe = new Probe();
+            probe.etag = conn.getHeaderField("ETag");
+            if (code == HttpURLConnection.HTTP_PARTIAL)
+            {
+                String contentRange = conn.getHeaderField("Content-Range"); // "bytes 0-0/12345"
+                int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+                if (slash >= 0 && !contentRange.endsWith("*"))
+                {
+                    probe.length = Long.parseLong(contentRange.substring(slash + 1).trim());
+                    probe.acceptsRanges = true;
+                }
+            }
+            else if (code == HttpURLConnection.HTTP_OK)
+            {
+                probe.length = conn.getContentLengthLong();
+            }
+            else
+            {
+                throw new IOException("HTTP " + code);
+            }
+            return probe;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Bad Content-Range");
+        }
+        finally
+        {
+            conn.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException
+    {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setRequestProperty("Accept-Encoding", "identity"); // byte offsets must match the file
+        return conn;
+    }
+
+    // --- Resume metadata ---
+
+    /** @return completed ranges if the sidecar matches this url / size / etag, else null */
+    private static BitSet readMeta(File part, String url, long length, String etag)
+    {
+        File meta = new File(part.getPath() + META_SUFFIX);
+        if (!meta.exists() || !part.exists() || part.length() != length) return null;
+        try
+        {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(meta.toPath()), StandardCharsets.UTF_8));
+            if (!url.equals(json.optString("url")) || json.optLong("length") != length
+                    || json.optLong("rangeSize") != RANGE_SIZE
+                    || (etag != null && !etag.equals(json.optString("etag", null)))) return null;
+            BitSet done = new BitSet();
+            JSONArray ranges = json.getJSONArray("done");
+            for (int i = 0; i < ranges.length(); i++) done.set(ranges.getInt(i));
+            Log.d(TAG, "Resuming " + part.getName() + " with " + done.cardinality() + " ranges on disk");
+            return done;
+        }
+        catch (IOException | JSONException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Persists progress via temp file + rename. Ranges are marked only after their bytes were
+     * written, and the data is forced before completion, so a crash can lose progress but never
+     * mark unwritten bytes as done.
+     */
+    private static void writeMeta(Job job)
+    {
+        File tmp = new File(job.meta.getPath() + ".tmp");
+        try
+        {
+            JSONObject json = new JSONObject();
+            json.put("url", job.url);
+            json.put("length", job.length);
+            json.put("rangeSize", RANGE_SIZE);
+            if (job.etag != null) json.put("etag", job.etag);
+            JSONArray ranges = new JSONArray();
+            for (int i = job.done.nextSetBit(0); i >= 0; i = job.done.nextSetBit(i + 1)) ranges.put(i);
+            json.put("done", ranges);
+            if (job.channel != null) job.channel.force(false);
+            Files.write(tmp.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+            if (!tmp.renameTo(job.meta)) tmp.delete();
+        }
+        catch (IOException | JSONException e)
+        {
+            Log.w(TAG, "Could not persist progress: " + e.getMessage());
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.ua.toolkit.cache;
+
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.media.MediaExtractor;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Single-file creative: one index header followed by page-aligned segments for the video,
+ * poster frame, app icon and optional end card.
+ *
+ * <pre>
+ * Header (big-endian)
+ *   0   magic        "UAPK"
+ *   4   version      u16
+ *   6   count        u16   number of index entries
+ *   8   totalLength  u64   must equal the file size — catches truncated downloads
+ *   16  headerCrc    u32   CRC32 of the header (with this field zeroed) and the index
+ *   20  reserved     u32
+ *   24  index        count × { type u8, reserved[7], offset u64, length u64 }
+ * Segments start on ALIGNMENT boundaries, so each one maps onto whole pages.
+ * </pre>
+ *
+ * Nothing is ever copied out of the pack: players get the video as (fd, offset, length), and
+ * images are decoded from a read-only mapping of their segment. The whole creative is one open,
+ * one integrity check and one cache eviction unit.
+ */
+public final class CreativePack
+{
+    private static final String TAG = "UA/CreativePack";
+    private static final int MAGIC        = 0x5541504B; // "UAPK"
+    private static final int VERSION      = 1;
+    private static final int HEADER_SIZE  = 24;
+    private static final int ENTRY_SIZE   = 24;
+    private static final int MAX_SEGMENTS = 16;
+    static final int ALIGNMENT = 4096;
+
+    public enum Segment
+    {
+        VIDEO(1), POSTER(2), ICON(3), END_CARD(4);
+
+        final int id;
+
+        Segment(int id) { this.id = id; }
+
+        static Segment fromId(int id)
+        {
+            for (Segment s : values()) if (s.id == id) return s;
+            return null; // newer writer — unknown segments are skipped
+        }
+    }
+
+    /** Byte range of one segment inside the pack file. */
+    public static final class Range
+    {
+        public final long offset;
+        public final long length;
+
+        Range(long offset, long length)
+        {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File file;
+    private final long fileLength;
+    private final long lastModified;
+    private final Map<Segment, Range> segments;
+
+    /** Parsed indexes of recently opened packs — re-validated only when size or mtime change. */
+    private static final int INDEX_CACHE_SIZE = 8;
+    private static final Map<String, CreativePack> INDEX_CACHE =
+            new LinkedHashMap<String, CreativePack>(INDEX_CACHE_SIZE, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CreativePack> eldest)
+                {
+                    return size() > INDEX_CACHE_SIZE;
+                }
+            };
+
+    private CreativePack(File file, Map<Segment, Range> segments)
+    {
+        this.file = file;
+        this.fileLength = file.length();
+        this.lastModified = file.lastModified();
+        this.segments = segments;
+    }
+
+    // --- Opening ---
+
+    /** Cheap magic-number sniff. Loose .mp4 / .html files return false. */
+    public static boolean isPack(String path)
+    {
+        if (path == null || path.isEmpty()) return false;
+        File f = new File(path);
+        if (f.length() < HEADER_SIZE) return false;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"))
+        {
+            return raf.readInt() == MAGIC;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Parses and validates the header: magic, version, CRC, total length against the file size,
+     * and every segment aligned, in bounds and non-overlapping.
+     *
+     * @throws IOException if the file is unreadable or any check fails
+     */
+    public static CreativePack open(String path) throws IOException
+    {
+        File f = new File(path);
+        synchronized (INDEX_CACHE)
+        {
+            CreativePack cached = INDEX_CACHE.get(path);
+            if (cached != null && cached.fileLength == f.length() && cached.lastModified == f.lastModified())
+                return cached;
+        }
+
+        CreativePack pack;
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ))
+        {
+            pack = new CreativePack(f, readIndex(ch, f.length()));
+        }
+        synchronized (INDEX_CACHE)
+        {
+            INDEX_CACHE.put(path, pack);
+        }
+        return pack;
+    }
+
+    private static Map<Segment, Range> readIndex(FileChannel ch, long fileLength) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(ch, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException("Not a creative pack");
+        int version = header.getShort() & 0xFFFF;
+        int count = header.getShort() & 0xFFFF;
+        long totalLength = header.getLong();
+        int storedCrc = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported pack version " + version);
+        if (count == 0 || count > MAX_SEGMENTS) throw new IOException("Bad segment count " + count);
+        if (totalLength != fileLength)
+            throw new IOException("Pack truncated: header says " + totalLength + " bytes, file has " + fileLength);
+
+        ByteBuffer index = ByteBuffer.allocate(count * ENTRY_SIZE);
+        readFully(ch, index, HEADER_SIZE);
+        index.flip();
+
+        CRC32 crc = new CRC32();
+        header.putInt(16, 0);
+        crc.update(header.array(), 0, HEADER_SIZE);
+        crc.update(index.array(), 0, index.limit());
+        if ((int) crc.getValue() != storedCrc) throw new IOException("Pack header CRC mismatch");
+
+        Map<Segment, Range> segments = new EnumMap<>(Segment.class);
+        long dataStart = align(HEADER_SIZE + (long) count * ENTRY_SIZE);
+        long previousEnd = dataStart;
+        for (int i = 0; i < count; i++)
+        {
+            int type = index.get() & 0xFF;
+            index.position(index.position() + 7);
+            long offset = index.getLong();
+            long length = index.getLong();
+            if (offset % ALIGNMENT != 0 || offset < previousEnd || length <= 0 || offset + length > fileLength)
+                throw new IOException("Bad segment " + type + " at " + offset + "+" + length);
+            previousEnd = offset + length;
+            Segment segment = Segment.fromId(type);
+            if (segment != null) segments.put(segment, new Range(offset, length));
+        }
+        if (!segments.containsKey(Segment.VIDEO)) throw new IOException("Pack has no video segment");
+        return segments;
+    }
+
+    // --- Access ---
+
+    public File getFile() { return file; }
+
+    public boolean has(Segment segment) { return segments.containsKey(segment); }
+
+    /** @return the segment's byte range, or null if the pack does not contain it */
+    public Range get(Segment segment) { return segments.get(segment); }
+
+    /**
+     * (fd, offset, length) view of a segment — what MediaPlayer accepts through a ContentProvider.
+     * The caller owns the returned descriptor.
+     */
+    public AssetFileDescriptor openAssetFd(Segment segment) throws IOException
+    {
+        Range r = require(segment);
+        ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        return new AssetFileDescriptor(pfd, r.offset, r.length);
+    }
+
+    /**
+     * Decodes an image segment straight from a read-only mapping of the file.
+     * @return the bitmap, or null if the segment is missing or not a decodable image
+     */
+    public Bitmap decodeBitmap(Segment segment)
+    {
+        Range r = segments.get(segment);
+        if (r == null) return null;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+            {
+                MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, r.offset, r.length);
+                return ImageDecoder.decodeBitmap(ImageDecoder.createSource(mapped));
+            }
+            // Pre-P: BitmapFactory needs a stream; JPEG/PNG/WebP end markers stop it at the segment end.
+            ch.position(r.offset);
+            InputStream in = Channels.newInputStream(ch);
+            return BitmapFactory.decodeStream(in);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "decode " + segment + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // --- Data source helpers (pack or loose file) ---
+
+    /**
+     * Points {@code extractor} at the video — the VIDEO segment if {@code path} is a pack, the file
+     * itself otherwise. The fd is only needed for the duration of the call.
+     */
+    public static void setVideoDataSource(MediaExtractor extractor, String path) throws IOException
+    {
+        if (!isPack(path))
+        {
+            extractor.setDataSource(path);
+            return;
+        }
+        Range r = open(path).require(Segment.VIDEO);
+        try (FileInputStream in = new FileInputStream(path))
+        {
+            extractor.setDataSource(in.getFD(), r.offset, r.length);
+        }
+    }
+
+    /** {@link #setVideoDataSource(MediaExtractor, String)} for frame extraction. */
+    public static void setVideoDataSource(MediaMetadataRetriever retriever, String path) throws IOException
+    {
+        if (!isPack(path))
+        {
+            retriever.setDataSource(path);
+            return;
+        }
+        Range r = open(path).require(Segment.VIDEO);
+        try (FileInputStream in = new FileInputStream(path))
+        {
+            retriever.setDataSource(in.getFD(), r.offset, r.length);
+        }
+    }
+
+    // --- Writing ---
+
+    /**
+     * Builds a pack from loose files (video required, the rest optional). Segment data is moved
+     * with FileChannel.transferTo; the result is written to a temp file and renamed into place.
+     */
+    public static void write(File target, Map<Segment, File> parts) throws IOException
+    {
+        File video = parts.get(Segment.VIDEO);
+        if (video == null || !video.isFile()) throw new IOException("Pack needs a video segment");
+
+        Map<Segment, File> present = new EnumMap<>(Segment.class);
+        for (Map.Entry<Segment, File> e : parts.entrySet())
+        {
+            if (e.getValue() != null && e.getValue().isFile() && e.getValue().length() > 0)
+                present.put(e.getKey(), e.getValue());
+        }
+
+        int count = present.size();
+        ByteBuffer index = ByteBuffer.allocate(count * ENTRY_SIZE);
+        long offset = align(HEADER_SIZE + (long) count * ENTRY_SIZE);
+        for (Map.Entry<Segment, File> e : present.entrySet())
+        {
+            long length = e.getValue().length();
+            index.put((byte) e.getKey().id).put(new byte[7]).putLong(offset).putLong(length);
+            offset = align(offset + length);
+        }
+        long totalLength = offset;
+        // The last segment is padded too, so totalLength is always page-aligned.
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) count)
+              .putLong(totalLength).putInt(0).putInt(0);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_SIZE);
+        crc.update(index.array(), 0, index.position());
+        header.putInt(16, (int) crc.getValue());
+
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            header.flip();
+            index.flip();
+            writeFully(out, header, 0);
+            writeFully(out, index, HEADER_SIZE);
+            index.rewind();
+            for (int i = 0; i < count; i++)
+            {
+                int type = index.get(i * ENTRY_SIZE) & 0xFF;
+                long segOffset = index.getLong(i * ENTRY_SIZE + 8);
+                File source = present.get(Segment.fromId(type));
+                try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ))
+                {
+                    long done = 0, size = in.size();
+                    while (done < size) done += in.transferTo(done, size - done, out.position(segOffset + done));
+                }
+            }
+            // Extend to the padded length so totalLength == file size.
+            if (out.size() < totalLength) writeFully(out, ByteBuffer.allocate(1), totalLength - 1);
+            out.force(false);
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(target))
+        {
+            tmp.delete();
+            throw new IOException("rename failed for " + target.getName());
+        }
+        Log.d(TAG, "Wrote " + target.getName() + " — " + count + " segments, " + totalLength + " bytes");
+    }
+
+    // --- Helpers ---
+
+    private Range require(Segment segment) throws IOException
+    {
+        Range r = segments.get(segment);
+        if (r == null) throw new IOException("Pack has no " + segment + " segment");
+        return r;
+    }
+
+    static long align(long value)
+    {
+        return (value + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long position) throws IOException
+    {
+        while (dst.hasRemaining())
+        {
+            int n = ch.read(dst, position + dst.position());
+            if (n < 0) throw new IOException("Unexpected end of pack");
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer src, long position) throws IOException
+    {
+        while (src.hasRemaining()) ch.write(src, position + src.position());
+    }
+}
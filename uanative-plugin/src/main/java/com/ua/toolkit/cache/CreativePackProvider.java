@@ -0,0 +1,81 @@
+package com.ua.toolkit.cache;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Serves pack segments as (fd, offset, length) to components that only take a Uri.
+ *
+ * VideoView has no setDataSource(fd, offset, length); it does accept a content Uri, and
+ * MediaPlayer opens those with openAssetFileDescriptor() and honours the descriptor's offset and
+ * length. Not exported — only this process can resolve the authority.
+ *
+ * Uri form: {@code content://<applicationId>.ua.creativepack/<segment>?pack=<absolute path>}
+ */
+public class CreativePackProvider extends ContentProvider
+{
+    private static final String TAG = "UA/CreativePackProvider";
+    private static final String AUTHORITY_SUFFIX = ".ua.creativepack";
+    private static final String PARAM_PACK = "pack";
+
+    /** Uri for the VIDEO segment of the pack at {@code packPath}. */
+    public static Uri videoUri(Context context, String packPath)
+    {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(context.getPackageName() + AUTHORITY_SUFFIX)
+                .appendPath(CreativePack.Segment.VIDEO.name().toLowerCase(Locale.ROOT))
+                .appendQueryParameter(PARAM_PACK, packPath)
+                .build();
+    }
+
+    @Override
+    public boolean onCreate()
+    {
+        return true;
+    }
+
+    @Override
+    public AssetFileDescriptor openAssetFile(Uri uri, String mode) throws FileNotFoundException
+    {
+        if (!"r".equals(mode)) throw new FileNotFoundException("Packs are read-only");
+        String path = uri.getQueryParameter(PARAM_PACK);
+        String segmentName = uri.getLastPathSegment();
+        if (path == null || !path.startsWith("/") || segmentName == null)
+            throw new FileNotFoundException("Bad pack uri " + uri);
+
+        CreativePack.Segment segment;
+        try { segment = CreativePack.Segment.valueOf(segmentName.toUpperCase(Locale.ROOT)); }
+        catch (IllegalArgumentException e) { throw new FileNotFoundException("Unknown segment " + segmentName); }
+
+        try
+        {
+            return CreativePack.open(path).openAssetFd(segment);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "openAssetFile failed for " + path + ": " + e.getMessage());
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+
+    @Override
+    public String getType(Uri uri)
+    {
+        return CreativePack.Segment.VIDEO.name().equalsIgnoreCase(uri.getLastPathSegment()) ? "video/mp4" : null;
+    }
+
+    @Override public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) { return null; }
+    @Override public Uri insert(Uri uri, ContentValues values) { return null; }
+    @Override public int delete(Uri uri, String selection, String[] selectionArgs) { return 0; }
+    @Override public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) { return 0; }
+}
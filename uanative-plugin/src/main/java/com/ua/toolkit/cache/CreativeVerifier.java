@@ -0,0 +1,157 @@
+package com.ua.toolkit.cache;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Integrity check of creatives against an expected SHA-256.
+ *
+ * Digests are computed with {@link CreativeDigest} (memory-mapped windows) on a background thread
+ * and remembered per file in SharedPreferences as {@code size:mtime:digest}. A later check of the
+ * same unchanged file is a map lookup, so repeated shows never re-hash. Any rewrite of the file
+ * changes size or mtime and invalidates the record.
+ *
+ * Files are hashed once when a download completes (see {@link CreativeContentStore}) and again
+ * lazily before display if no valid record exists. A mismatch is reported before the ad shows,
+ * and {@link #evict} removes the file.
+ *
+ * Unity can call {@code CreativeVerifier.verify(activity, path, sha256)} from a worker thread.
+ */
+public final class CreativeVerifier
+{
+    private static final String TAG = "UA/Verifier";
+    private static final String PREFS = "ua_creative_digests";
+    private static final int PRUNE_THRESHOLD = 200;
+
+    public interface Callback
+    {
+        void onVerified(boolean ok);
+    }
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(r, "UA-Verifier");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Handler main = new Handler(Looper.getMainLooper());
+
+    private CreativeVerifier() { }
+
+    /**
+     * Checks {@code path} against {@code expectedSha256}. A cached digest answers synchronously on
+     * the calling thread. Otherwise the file is hashed in the background and the callback runs on
+     * the main thread.
+     */
+    public static void verifyAsync(Context context, String path, String expectedSha256, Callback callback)
+    {
+        Context app = context.getApplicationContext();
+        File file = new File(path);
+        String cached = cachedDigest(app, file);
+        if (cached != null)
+        {
+            callback.onVerified(matches(cached, expectedSha256, path));
+            return;
+        }
+        worker.execute(() ->
+        {
+            boolean ok = verify(app, path, expectedSha256);
+            main.post(() -> callback.onVerified(ok));
+        });
+    }
+
+    /** Blocking check; hashes the file unless a valid digest is cached. */
+    public static boolean verify(Context context, String path, String expectedSha256)
+    {
+        try
+        {
+            return matches(digest(context.getApplicationContext(), new File(path)), expectedSha256, path);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not hash " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes a corrupt creative: from {@link CreativeCache} if it owns the file, otherwise by
+     * deleting it so the game's own presence check triggers a fresh download. Runs on the cache
+     * thread, after any pin release posted before it. Main-thread safe.
+     */
+    public static void evict(Context context, String path)
+    {
+        Context app = context.getApplicationContext();
+        CreativeCache.post(app, cache ->
+        {
+            String key = cache.keyForPath(path);
+            boolean removed = key != null ? cache.remove(key) : new File(path).delete();
+            prefs(app).edit().remove(path).apply();
+            Log.w(TAG, "Evicted corrupt creative " + path + (removed ? "" : " (still in use)"));
+        });
+    }
+
+    // --- Package API ---
+
+    /** Digest of {@code file}, from the record if still valid, else computed and recorded. */
+    static String digest(Context context, File file) throws IOException
+    {
+        String cached = cachedDigest(context, file);
+        if (cached != null) return cached;
+        long start = System.nanoTime();
+        String digest = CreativeDigest.sha256(file);
+        Log.d(TAG, "Hashed " + file.getName() + " (" + file.length() + " bytes) in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+        record(context, file, digest);
+        return digest;
+    }
+
+    /** Stores an already computed digest so the next check skips hashing. */
+    static void record(Context context, File file, String digest)
+    {
+        SharedPreferences prefs = prefs(context);
+        SharedPreferences.Editor editor = prefs.edit();
+        if (prefs.getAll().size() >= PRUNE_THRESHOLD)
+        {
+            for (Map.Entry<String, ?> e : prefs.getAll().entrySet())
+            {
+                if (!new File(e.getKey()).exists()) editor.remove(e.getKey());
+            }
+        }
+        editor.putString(file.getAbsolutePath(), file.length() + ":" + file.lastModified() + ":" + digest).apply();
+    }
+
+    // --- Internals ---
+
+    private static String cachedDigest(Context context, File file)
+    {
+        String record = prefs(context).getString(file.getAbsolutePath(), null);
+        if (record == null) return null;
+        String[] parts = record.split(":");
+        if (parts.length != 3) return null;
+        if (!parts[0].equals(String.valueOf(file.length())) || !parts[1].equals(String.valueOf(file.lastModified())))
+            return null;
+        return parts[2];
+    }
+
+    private static boolean matches(String actual, String expected, String path)
+    {
+        boolean ok = actual.equalsIgnoreCase(expected);
+        if (!ok) Log.w(TAG, "Digest mismatch for " + path + ": expected " + expected + ", got " + actual);
+        return ok;
+    }
+
+    private static SharedPreferences prefs(Context context)
+    {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,457 @@
+package com.ua.toolkit.cache;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.ua.toolkit.WebViewWarmUp;
+import com.ua.toolkit.display.AdPosterFrame;
+import com.ua.toolkit.display.PlayableBuilder;
+import com.ua.toolkit.media.DecoderCapabilities;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides when upcoming creatives are downloaded, preflighted and given a poster frame.
+ *
+ * Unity hands over the next creatives in priority order ({@link #schedule(String)}). The list
+ * replaces the previous one: items that dropped out are cancelled, and their partial downloads
+ * stay on disk for a later resume. Each item runs through {@link CreativeContentStore#fetch}. Videos
+ * then get {@link DecoderCapabilities#preflight} and {@link AdPosterFrame#prefetchBlocking};
+ * playables get a {@link PlayableBuilder} artifact.
+ *
+ * The policy is re-evaluated whenever the network, charger, battery saver or game state changes:
+ * <ul>
+ *   <li>No network — nothing runs.</li>
+ *   <li>Unmetered — up to two items at once, four connections each.</li>
+ *   <li>Metered, or battery saver while unplugged — only the head of the list, two connections.
+ *       Other downloads are cancelled and resume later.</li>
+ *   <li>Game active ({@link #setGameActive}) — one item on one connection. Post-download
+ *       processing waits for a pause, except for the head item.</li>
+ * </ul>
+ * All state is confined to the main thread; public methods can be called from any thread.
+ */
+public final class PrefetchScheduler
+{
+    private static final String TAG = "UA/Prefetch";
+
+    public interface Listener
+    {
+        /** The creative is stored, decodable and has its poster; {@code path} is ready for VIDEO_PATH. */
+        void onCreativeReady(String alias, String path);
+        void onCreativeFailed(String alias, String error);
+    }
+
+    /** One entry of the schedule. */
+    public static final class Item
+    {
+        public final String  alias;
+        public final String  url;
+        public final String  sha256;
+        public final long    ttlSeconds;
+        public final boolean isVideo;
+
+        public Item(String alias, String url, String sha256, long ttlSeconds, boolean isVideo)
+        {
+            this.alias      = alias;
+            this.url        = url;
+            this.sha256     = sha256;
+            this.ttlSeconds = ttlSeconds;
+            this.isVideo    = isVideo;
+        }
+
+        /**
+         * Parses {@code [{"alias":"…","url":"…","sha256":"…","ttlSeconds":86400,"type":"video"}, …]}.
+         * {@code type} is {@code video} (default) or {@code playable}. Entries without alias or url
+         * are skipped; never returns null.
+         */
+        public static List<Item> parseList(String json)
+        {
+            if (json == null || json.isEmpty()) return Collections.emptyList();
+            List<Item> items = new ArrayList<>();
+            try
+            {
+                JSONArray array = new JSONArray(json);
+                for (int i = 0; i < array.length(); i++)
+                {
+                    JSONObject o = array.optJSONObject(i);
+                    if (o == null || o.optString("alias").isEmpty() || o.optString("url").isEmpty()) continue;
+                    items.add(new Item(o.optString("alias"), o.optString("url"), o.optString("sha256", null),
+                            o.optLong("ttlSeconds", 0), !"playable".equals(o.optString("type"))));
+                }
+            }
+            catch (JSONException e)
+            {
+                Log.w(TAG, "Schedule is not a JSON array: " + e.getMessage());
+            }
+            return items;
+        }
+    }
+
+    private enum State { QUEUED, DOWNLOADING, DOWNLOADED, PROCESSING }
+
+    private static final class Job
+    {
+        final Item item;
+        State state = State.QUEUED;
+        CreativeDownloader.Task task;
+        String path;
+        Object token; // identifies the current attempt; stale callbacks are ignored
+
+        Job(Item item) { this.item = item; }
+    }
+
+    private static final class Policy
+    {
+        boolean online;
+        int maxJobs;
+        int connections;
+        boolean headOnly;
+        boolean deferProcessing;
+
+        @Override
+        public String toString()
+        {
+            return online ? "jobs=" + maxJobs + " conns=" + connections + (headOnly ? " head-only" : "")
+                    + (deferProcessing ? " defer-processing" : "") : "offline";
+        }
+    }
+
+    private static PrefetchScheduler instance;
+
+    private final Context context;
+    private final ConnectivityManager connectivity;
+    private final PowerManager power;
+    private final BatteryManager battery;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final ExecutorService processor = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(() ->
+        {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "UA-Prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<Job> jobs = new ArrayList<>(); // priority order
+    private final Map<String, Job> byAlias = new HashMap<>();
+    private Listener listener;
+    private boolean gameActive = false;
+    private boolean processing = false;
+    private boolean monitoring = false;
+    private String lastPolicy;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback()
+    {
+        // Registered on the main handler, so these already run on the scheduling thread.
+        @Override public void onCapabilitiesChanged(Network network, NetworkCapabilities caps) { pump(); }
+        @Override public void onLost(Network network) { pump(); }
+    };
+
+    private final BroadcastReceiver powerReceiver = new BroadcastReceiver()
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            pump();
+        }
+    };
+
+    private PrefetchScheduler(Context context)
+    {
+        this.context      = context;
+        this.connectivity = context.getSystemService(ConnectivityManager.class);
+        this.power        = context.getSystemService(PowerManager.class);
+        this.battery      = context.getSystemService(BatteryManager.class);
+    }
+
+    public static synchronized PrefetchScheduler getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            CreativeCache.openAsync(context);
+            instance = new PrefetchScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // --- Public API ---
+
+    public void setListener(Listener listener)
+    {
+        main.post(() -> this.listener = listener);
+    }
+
+    /** Unity entry point: JSON form of {@link #schedule(List)}, see {@link Item#parseList}. */
+    public void schedule(String json)
+    {
+        schedule(Item.parseList(json));
+    }
+
+    /** Replaces the schedule with {@code items}, highest priority first. */
+    public void schedule(List<Item> items)
+    {
+        main.post(() ->
+        {
+            Map<String, Job> previous = new HashMap<>(byAlias);
+            jobs.clear();
+            byAlias.clear();
+            for (Item item : items)
+            {
+                if (byAlias.containsKey(item.alias)) continue;
+                Job job = previous.remove(item.alias);
+                if (job == null) job = new Job(item);
+                jobs.add(job);
+                byAlias.put(item.alias, job);
+            }
+            for (Job dropped : previous.values()) stop(dropped);
+            for (Item item : items)
+            {
+                if (!item.isVideo) { WebViewWarmUp.warmUp(context); break; } // a playable is coming up
+            }
+            Log.d(TAG, "Schedule: " + jobs.size() + " items (" + previous.size() + " dropped)");
+            pump();
+        });
+    }
+
+    /** Cancels one creative. A partial download stays on disk and resumes if it is scheduled again. */
+    public void cancel(String alias)
+    {
+        main.post(() ->
+        {
+            Job job = byAlias.remove(alias);
+            if (job == null) return;
+            jobs.remove(job);
+            stop(job);
+            pump();
+        });
+    }
+
+    public void cancelAll()
+    {
+        schedule(Collections.emptyList());
+    }
+
+    /**
+     * Unity reports whether gameplay is in the foreground (true) or the game is in a menu, loading
+     * or paused (false). Prefetching backs off while it is active.
+     */
+    public void setGameActive(boolean active)
+    {
+        main.post(() ->
+        {
+            if (gameActive == active) return;
+            gameActive = active;
+            pump();
+        });
+    }
+
+    // --- Scheduling ---
+
+    private void pump()
+    {
+        updateMonitoring();
+        if (jobs.isEmpty()) return;
+
+        Policy policy = evaluate();
+        String description = policy.toString();
+        if (!description.equals(lastPolicy))
+        {
+            Log.d(TAG, "Policy: " + description);
+            lastPolicy = description;
+        }
+        CreativeDownloader.getInstance(context).setMaxConnections(policy.connections);
+
+        int running = 0;
+        for (int i = 0; i < jobs.size(); i++)
+        {
+            Job job = jobs.get(i);
+            if (job.state != State.DOWNLOADING) continue;
+            boolean allowed = policy.online && running < policy.maxJobs && (!policy.headOnly || i == 0);
+            if (allowed) running++;
+            else requeue(job); // paused by policy — progress is kept on disk
+        }
+
+        for (int i = 0; i < jobs.size() && policy.online && running < policy.maxJobs; i++)
+        {
+            if (policy.headOnly && i > 0) break;
+            Job job = jobs.get(i);
+            if (job.state != State.QUEUED) continue;
+            startDownload(job);
+            running++;
+        }
+
+        if (!processing)
+        {
+            for (int i = 0; i < jobs.size(); i++)
+            {
+                Job job = jobs.get(i);
+                if (job.state != State.DOWNLOADED) continue;
+                if (policy.deferProcessing && i > 0) break;
+                startProcessing(job);
+                break;
+            }
+        }
+    }
+
+    private Policy evaluate()
+    {
+        Policy p = new Policy();
+        NetworkCapabilities caps = connectivity != null ? connectivity.getNetworkCapabilities(connectivity.getActiveNetwork()) : null;
+        p.online = caps != null && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        boolean unmetered = caps != null && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        boolean charging = battery != null && battery.isCharging();
+        boolean saver = power != null && power.isPowerSaveMode();
+
+        p.maxJobs = unmetered ? 2 : 1;
+        p.connections = unmetered ? 4 : 2;
+        p.headOnly = !unmetered || (saver && !charging);
+        if (saver && !charging) p.maxJobs = 1;
+        if (gameActive)
+        {
+            p.maxJobs = 1;
+            p.connections = 1;
+            p.deferProcessing = true;
+        }
+        return p;
+    }
+
+    private void startDownload(Job job)
+    {
+        Object token = new Object();
+        job.token = token;
+        job.state = State.DOWNLOADING;
+        Item item = job.item;
+        job.task = CreativeContentStore.getInstance(context).fetch(item.alias, item.url, item.sha256, item.ttlSeconds,
+                new CreativeDownloader.Callback()
+                {
+                    @Override
+                    public void onDownloadComplete(String alias, String path)
+                    {
+                        if (job.token != token || byAlias.get(alias) != job) return;
+                        job.task = null;
+                        job.path = path;
+                        job.state = State.DOWNLOADED;
+                        pump();
+                    }
+
+                    @Override
+                    public void onDownloadFailed(String alias, String error)
+                    {
+                        if (job.token != token || byAlias.get(alias) != job) return;
+                        job.task = null;
+                        complete(job, error);
+                    }
+                });
+    }
+
+    /** Preflight and poster (videos) or the pre-patched build (playables) off the main thread, one at a time. */
+    private void startProcessing(Job job)
+    {
+        job.state = State.PROCESSING;
+        processing = true;
+        Object token = job.token;
+        String path = job.path;
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        processor.execute(() ->
+        {
+            String error = null;
+            if (job.item.isVideo)
+            {
+                DecoderCapabilities.getBlocking(context);
+                error = DecoderCapabilities.preflight(path);
+                if (error == null && !AdPosterFrame.prefetchBlocking(path, dm.widthPixels, dm.heightPixels))
+                {
+                    Log.w(TAG, "No poster for " + job.item.alias + " — the ad will start on a black frame");
+                }
+            }
+            else if (!PlayableBuilder.build(context, path))
+            {
+                Log.w(TAG, "No pre-built artifact for " + job.item.alias + " — it will be patched at show time");
+            }
+            String result = error;
+            main.post(() ->
+            {
+                processing = false;
+                if (job.token == token && byAlias.get(job.item.alias) == job) complete(job, result);
+                else pump();
+            });
+        });
+    }
+
+    private void complete(Job job, String error)
+    {
+        jobs.remove(job);
+        byAlias.remove(job.item.alias);
+        if (error == null) Log.d(TAG, job.item.alias + " ready");
+        else Log.w(TAG, job.item.alias + " failed: " + error);
+        if (listener != null)
+        {
+            if (error == null) listener.onCreativeReady(job.item.alias, job.path);
+            else listener.onCreativeFailed(job.item.alias, error);
+        }
+        pump();
+    }
+
+    private void requeue(Job job)
+    {
+        if (job.task != null) job.task.cancel();
+        job.task = null;
+        job.token = null;
+        job.state = State.QUEUED;
+    }
+
+    private void stop(Job job)
+    {
+        if (job.task != null) job.task.cancel();
+        job.task = null;
+        job.token = null;
+    }
+
+    // --- Constraint monitoring ---
+
+    private void updateMonitoring()
+    {
+        boolean wanted = !jobs.isEmpty();
+        if (wanted == monitoring) return;
+        monitoring = wanted;
+        if (wanted)
+        {
+            if (connectivity != null) connectivity.registerDefaultNetworkCallback(networkCallback, main);
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_POWER_CONNECTED);
+            filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+            filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+            context.registerReceiver(powerReceiver, filter, null, main);
+        }
+        else
+        {
+            if (connectivity != null) connectivity.unregisterNetworkCallback(networkCallback);
+            context.unregisterReceiver(powerReceiver);
+            lastPolicy = null;
+        }
+    }
+}
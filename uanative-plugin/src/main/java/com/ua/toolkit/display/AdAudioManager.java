@@ -26,9 +26,15 @@ public class AdAudioManager
         void onAudioFocusResume();
     }
 
+    /** Anything that can take a left/right gain — a MediaPlayer or the codec engine's AudioTrack. */
+    public interface VolumeControl
+    {
+        void setVolume(float left, float right);
+    }
+
     private final AudioManager audioManager;
     private AudioFocusRequest audioFocusRequest; // API 26+ only
-    private MediaPlayer mediaPlayer;
+    private VolumeControl volumeControl;
     private boolean isMuted = false;
     private boolean isDucked = false;
     private FocusChangeListener focusChangeListener;
@@ -71,7 +77,12 @@ public class AdAudioManager
 
     public void setMediaPlayer(MediaPlayer mediaPlayer)
     {
-        this.mediaPlayer = mediaPlayer;
+        setVolumeControl(mediaPlayer != null ? mediaPlayer::setVolume : null);
+    }
+
+    public void setVolumeControl(VolumeControl volumeControl)
+    {
+        this.volumeControl = volumeControl;
         applyMuteState();
     }
 
@@ -125,14 +136,14 @@ public class AdAudioManager
 
     private void applyMuteState()
     {
-        if (mediaPlayer != null)
+        if (volumeControl != null)
         {
             float volume = isDucked ? 0.2f : (isMuted ? 0.0f : 1.0f);
             // setVolume() calls native _setVolume which throws java.lang.Error (not Exception)
             // on Android 14+ when the MediaPlayer has been released at the native level but the
             // Java reference is not yet null — e.g. when a queued focus-change callback fires
             // just after finishWithResult() called audioManager.release().
-            try { mediaPlayer.setVolume(volume, volume); }
+            try { volumeControl.setVolume(volume, volume); }
             catch (Throwable t) { Log.w(TAG, "applyMuteState: setVolume failed — " + t.getMessage()); }
         }
     }
@@ -140,6 +151,6 @@ public class AdAudioManager
     public void release()
     {
         abandonFocus();
-        mediaPlayer = null;
+        volumeControl = null;
     }
 }
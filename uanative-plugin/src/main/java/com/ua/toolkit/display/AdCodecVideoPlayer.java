@@ -0,0 +1,995 @@
+package com.ua.toolkit.display;
+
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.Surface;
+import android.view.TextureView;
+
+import com.ua.toolkit.AdMetrics;
+import com.ua.toolkit.cache.CreativePack;
+import com.ua.toolkit.media.DecoderCapabilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Opt-in video engine built directly on MediaExtractor + MediaCodec, rendering into a TextureView.
+ * Reports through the same {@link AdVideoPlayer.Listener} as the VideoView engine, so AdActivity
+ * is unaware of which one is running. Enabled per ad with the {@code USE_CODEC_ENGINE} extra.
+ *
+ * What it does differently from VideoView / MediaPlayer:
+ *   - Pre-roll: decoders start against a detached placeholder surface as soon as load() is called
+ *     and the first frame is decoded and held before the TextureView has been laid out. When the
+ *     view surface arrives the codec is switched over with setOutputSurface() and the held frame
+ *     is presented immediately.
+ *   - Persistent surface: a TextureView keeps its SurfaceTexture while the activity is stopped,
+ *     unlike the SurfaceView inside VideoView, so backgrounding never tears down the output.
+ *   - Keep-alive: suspend() only stops the clock. Codecs are released after KEEP_ALIVE_MS, so a
+ *     quick trip to the notification shade or store sheet resumes without a re-prepare.
+ *   - Decoder choice: a hardware decoder is picked explicitly from MediaCodecList, or the named
+ *     decoder from {@code VIDEO_DECODER_NAME} when it supports the stream.
+ *   - Looping: at each track's own end of stream its extractor is rewound and sample timestamps
+ *     continue with an offset, so the decoders never see EOS or a flush between iterations.
+ *   - A/V sync: video frames are timed against the AudioTrack's timestamps, so they follow the
+ *     audio the user hears. The system clock stands in when there is no audio, or its length
+ *     differs from the video's by more than AUDIO_SYNC_SLACK_US.
+ *
+ * The codecs run in async mode with their callbacks on a dedicated thread. Nothing polls: frames
+ * that are early post a wake-up for when they are due, and AudioTrack period notifications
+ * resume PCM writes. Listener and metrics calls are posted to the main thread. Public methods are
+ * main-thread only.
+ */
+public class AdCodecVideoPlayer implements AdVideoEngine, AdAudioManager.VolumeControl,
+        TextureView.SurfaceTextureListener
+{
+    private static final String TAG = "UA/CodecPlayer";
+    private static final long KEEP_ALIVE_MS       = 10_000;
+    private static final long EARLY_RENDER_US     = 33_000;  // queue frames up to ~2 vsyncs ahead
+    private static final long LATE_DROP_US        = 40_000;  // skip frames that would show this late
+    private static final long AUDIO_SYNC_SLACK_US = 500_000; // audio this close in length drives the clock
+    private static final int  AUDIO_PERIOD_MS     = 20;      // AudioTrack refill notifications
+
+    private final TextureView textureView;
+    private final AdVideoPlayer.Listener listener;
+    private final String preferredDecoder;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final HandlerThread thread;
+    private final Handler work;
+    private AdMetrics metrics;
+
+    // --- Main thread ---
+    private String currentVideoPath;
+    private int savedPosition = 0;
+    private int lastPausedPosition = 0;
+    private boolean isSuspended = false;
+
+    // --- Shared ---
+    private volatile boolean released = false;
+    private volatile Surface viewSurface;   // TextureView surface, null until available
+    private volatile long durationUs = 0;
+    private volatile long positionUs = 0;   // timeline position — keeps growing across loops
+    private volatile int videoWidth, videoHeight;
+    private volatile float volume = 1f;
+
+    // --- Playback thread ---
+    private MediaExtractor videoExtractor;
+    private MediaExtractor audioExtractor;
+    private MediaCodec videoDecoder;
+    private MediaCodec audioDecoder;
+    private AudioTrack audioTrack;
+    private Surface outputSurface;          // surface the video decoder currently renders into
+    private SurfaceTexture placeholderTexture;
+    private Surface placeholderSurface;
+    private final DecoderCallback decoderCallback = new DecoderCallback();
+    private final ArrayDeque<Output> videoFrames = new ArrayDeque<>(); // decoded, waiting for their time
+    private final ArrayDeque<Output> audioPcm = new ArrayDeque<>();    // not yet fully written to the AudioTrack
+    private long videoLoopUs, audioLoopUs;  // timestamp step per iteration, 0 = don't loop
+    private long videoLoopOffsetUs, audioLoopOffsetUs;
+    private boolean audioMaster = false;    // the AudioTrack clock times the video
+    private boolean audioEnded = false;
+    private int audioSampleRate, audioFrameBytes;
+    private long audioFramesWritten;
+    private final ArrayDeque<long[]> audioMarks = new ArrayDeque<>(); // {first frame, ptsUs} per PCM buffer
+    private long[] audioMark;               // the mark covering the frame now playing
+    private final AudioTimestamp audioTimestamp = new AudioTimestamp();
+    private long skipUntilUs = -1;          // after a re-prepare, output before this is dropped
+    private boolean prerolled = false;      // first frame decoded and held
+    private boolean playWhenReady = false;
+    private boolean clockRunning = false;
+    private long clockBaseUs, clockStartedAtUs, clockSyncedAtUs;
+    private boolean renderNotifyPending = false; // next presented frame reports onVideoRenderingStart
+    private boolean completionPosted = false;
+    private int droppedFrames = 0;
+
+    private final Runnable renderDue = () -> guarded(this::drainVideo);
+
+    private final Runnable releaseIdleCodecs = () ->
+    {
+        if (playWhenReady || videoDecoder == null) return;
+        Log.d(TAG, "Keep-alive expired — releasing codecs");
+        releaseCodecs();
+    };
+
+    public AdCodecVideoPlayer(TextureView textureView, AdVideoPlayer.Listener listener, String preferredDecoder)
+    {
+        this.textureView = textureView;
+        this.listener = listener;
+        this.preferredDecoder = preferredDecoder;
+
+        thread = new HandlerThread("UA-CodecPlayer", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        work = new Handler(thread.getLooper());
+
+        textureView.setSurfaceTextureListener(this);
+        if (textureView.isAvailable())
+            onSurfaceTextureAvailable(textureView.getSurfaceTexture(), textureView.getWidth(), textureView.getHeight());
+    }
+
+    @Override
+    public void setMetrics(AdMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void load(String videoPath)
+    {
+        currentVideoPath = videoPath;
+        if (metrics != null) metrics.markPrepareStart();
+        long startUs = savedPosition * 1000L;
+        work.post(() ->
+        {
+            renderNotifyPending = true;
+            playWhenReady = true;
+            prepare(videoPath, startUs);
+        });
+    }
+
+    @Override
+    public void pause()
+    {
+        lastPausedPosition = getCurrentPosition();
+        work.post(this::pausePlayback);
+    }
+
+    /** Stops the clock but keeps the codecs for KEEP_ALIVE_MS — a quick return resumes instantly. */
+    @Override
+    public void suspend()
+    {
+        if (isSuspended) return;
+        isSuspended = true;
+        lastPausedPosition = getCurrentPosition();
+        savedPosition = lastPausedPosition;
+        Log.d(TAG, "Suspended at " + savedPosition + "ms");
+        work.post(this::pausePlayback);
+        work.postDelayed(releaseIdleCodecs, KEEP_ALIVE_MS);
+    }
+
+    @Override
+    public void resume()
+    {
+        if (!isSuspended)
+        {
+            work.post(this::startPlayback);
+            return;
+        }
+        isSuspended = false;
+        if (metrics != null) metrics.markResumeStart();
+        String path = currentVideoPath;
+        long startUs = savedPosition * 1000L;
+        work.post(() ->
+        {
+            work.removeCallbacks(releaseIdleCodecs);
+            renderNotifyPending = true;
+            if (videoDecoder == null && path != null)
+            {
+                Log.d(TAG, "Codecs released during suspend — re-preparing at " + (startUs / 1000) + "ms");
+                playWhenReady = true;
+                prepare(path, startUs);
+            }
+            else
+            {
+                startPlayback();
+            }
+        });
+    }
+
+    @Override
+    public void setSavedPosition(int position)
+    {
+        this.savedPosition = position;
+    }
+
+    @Override
+    public void stop()
+    {
+        if (released) return;
+        released = true;
+        textureView.setSurfaceTextureListener(null);
+        main.removeCallbacksAndMessages(null);
+        work.removeCallbacksAndMessages(null);
+        Surface surface = viewSurface;
+        viewSurface = null;
+        work.post(() ->
+        {
+            releaseCodecs();
+            releasePlaceholder();
+            if (surface != null) surface.release();
+        });
+        thread.quitSafely();
+    }
+
+    @Override
+    public int getLastPausedPosition()
+    {
+        return lastPausedPosition;
+    }
+
+    @Override
+    public int getCurrentPosition()
+    {
+        long dur = durationUs;
+        long pos = positionUs;
+        return (int) ((dur > 0 ? pos % dur : pos) / 1000);
+    }
+
+    @Override
+    public int getDuration()
+    {
+        return (int) (durationUs / 1000);
+    }
+
+    @Override
+    public AdAudioManager.VolumeControl getVolumeControl()
+    {
+        return this;
+    }
+
+    /** AdAudioManager sink — applied to the AudioTrack on the playback thread. */
+    @Override
+    public void setVolume(float left, float right)
+    {
+        volume = Math.max(left, right);
+        work.post(() ->
+        {
+            if (audioTrack != null) audioTrack.setVolume(volume);
+        });
+    }
+
+    // --- TextureView.SurfaceTextureListener (main thread) ---
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height)
+    {
+        if (metrics != null) metrics.markSurfaceCreated();
+        viewSurface = new Surface(texture);
+        applyCrop();
+        work.post(this::attachViewSurface);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height)
+    {
+        applyCrop();
+    }
+
+    /**
+     * Only reached when the view is detached (the activity is going away). Returns false and
+     * leaves the texture to the playback thread, which moves the decoder to the placeholder
+     * before releasing it, so it never renders into a released surface and main never waits.
+     */
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture texture)
+    {
+        Surface old = viewSurface;
+        viewSurface = null;
+        Runnable detach = () ->
+        {
+            detachViewSurface();
+            if (old != null) old.release();
+            texture.release();
+        };
+        if (!work.post(detach))
+        {
+            // Playback thread already gone: nothing renders any more.
+            if (old != null) old.release();
+            texture.release();
+        }
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture texture) { }
+
+    /** Centre-crop, matching VideoView's SCALE_TO_FIT_WITH_CROPPING and the poster's CENTER_CROP. */
+    private void applyCrop()
+    {
+        int vw = videoWidth, vh = videoHeight;
+        float w = textureView.getWidth(), h = textureView.getHeight();
+        if (vw <= 0 || vh <= 0 || w <= 0 || h <= 0) return;
+        float scale = Math.max(w / vw, h / vh);
+        Matrix matrix = new Matrix();
+        matrix.setScale(vw * scale / w, vh * scale / h, w / 2f, h / 2f);
+        textureView.setTransform(matrix);
+    }
+
+    // --- Playback thread ---
+
+    private void prepare(String path, long startUs)
+    {
+        releaseCodecs();
+        try
+        {
+            videoExtractor = new MediaExtractor();
+            CreativePack.setVideoDataSource(videoExtractor, path);
+            int videoTrack = selectTrack(videoExtractor, "video/");
+            if (videoTrack < 0) throw new IOException("No video track in " + path);
+            videoExtractor.selectTrack(videoTrack);
+            MediaFormat videoFormat = videoExtractor.getTrackFormat(videoTrack);
+
+            MediaFormat audioFormat = null;
+            audioExtractor = new MediaExtractor();
+            CreativePack.setVideoDataSource(audioExtractor, path);
+            int audioTrackIndex = selectTrack(audioExtractor, "audio/");
+            if (audioTrackIndex >= 0)
+            {
+                audioExtractor.selectTrack(audioTrackIndex);
+                audioFormat = audioExtractor.getTrackFormat(audioTrackIndex);
+            }
+            else
+            {
+                audioExtractor.release();
+                audioExtractor = null;
+            }
+
+            // Each track rewinds at its own end of stream. When the audio is about as long as the
+            // video, the AudioTrack clock times the video, so video timestamps step by the audio's
+            // length to stay on its timeline. Otherwise the video keeps its own length and clock.
+            long videoUs = trackDurationUs(videoFormat);
+            long audioUs = trackDurationUs(audioFormat);
+            audioMaster = audioUs > 0 && (videoUs <= 0 || Math.abs(audioUs - videoUs) <= AUDIO_SYNC_SLACK_US);
+            audioLoopUs = audioUs;
+            videoLoopUs = audioMaster ? audioUs : videoUs;
+            durationUs = videoLoopUs;
+            publishVideoSize(videoFormat);
+
+            String name = selectVideoDecoder(videoFormat);
+            videoDecoder = name != null
+                    ? MediaCodec.createByCodecName(name)
+                    : MediaCodec.createDecoderByType(videoFormat.getString(MediaFormat.KEY_MIME));
+            videoDecoder.setCallback(decoderCallback, work);
+            outputSurface = viewSurface != null ? viewSurface : placeholderSurface();
+            videoDecoder.configure(videoFormat, outputSurface, null, 0);
+            videoDecoder.start();
+            Log.d(TAG, "Video decoder " + videoDecoder.getName() + " ("
+                    + (outputSurface == placeholderSurface ? "pre-roll on placeholder" : "view surface") + ")");
+
+            if (audioFormat != null) startAudioDecoder(audioFormat);
+
+            // Callbacks are delivered on this thread, so none arrive before the seek below.
+            if (startUs > 0)
+            {
+                videoExtractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                if (audioExtractor != null) audioExtractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            }
+            skipUntilUs = startUs > 0 ? startUs : -1;
+            videoLoopOffsetUs = 0;
+            audioLoopOffsetUs = 0;
+            prerolled = false;
+        }
+        catch (IOException e)
+        {
+            fail(MediaPlayer.MEDIA_ERROR_IO, e);
+        }
+        catch (Exception e)
+        {
+            fail(MediaPlayer.MEDIA_ERROR_UNSUPPORTED, e);
+        }
+    }
+
+    /** Audio is best-effort: a missing or unsupported track leaves the ad playing silently. */
+    private void startAudioDecoder(MediaFormat format)
+    {
+        try
+        {
+            audioDecoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            audioDecoder.setCallback(decoderCallback, work);
+            audioDecoder.configure(format, null, null, 0);
+            audioDecoder.start();
+        }
+        catch (Exception e)
+        {
+            Log.w(TAG, "Audio decoder unavailable, playing without sound: " + e.getMessage());
+            releaseAudio();
+        }
+    }
+
+    /**
+     * Async decoder events, delivered on the playback thread. A codec that has since been
+     * released or replaced is no longer {@code videoDecoder} / {@code audioDecoder}, so its
+     * late events are ignored.
+     */
+    private final class DecoderCallback extends MediaCodec.Callback
+    {
+        @Override
+        public void onInputBufferAvailable(MediaCodec codec, int index)
+        {
+            if (codec == videoDecoder) guarded(() -> queueInput(videoExtractor, codec, index, true));
+            else if (codec == audioDecoder) guarded(() -> queueInput(audioExtractor, codec, index, false));
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info)
+        {
+            if (codec == videoDecoder) guarded(() -> onVideoOutput(index, info));
+            else if (codec == audioDecoder) guarded(() -> onAudioOutput(index, info));
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec codec, MediaFormat format)
+        {
+            // Video crop uses the container size; only audio needs a new sink.
+            if (codec == audioDecoder) guarded(() -> createAudioTrack(format));
+        }
+
+        @Override
+        public void onError(MediaCodec codec, MediaCodec.CodecException e)
+        {
+            if (codec == videoDecoder)
+            {
+                fail(MediaPlayer.MEDIA_ERROR_UNKNOWN, e);
+            }
+            else if (codec == audioDecoder)
+            {
+                Log.w(TAG, "Audio decoder failed, playing without sound: " + e.getMessage());
+                releaseAudio();
+            }
+        }
+    }
+
+    /** Room in the AudioTrack: it has played another period since the last notification. */
+    private final AudioTrack.OnPlaybackPositionUpdateListener audioPeriodListener =
+            new AudioTrack.OnPlaybackPositionUpdateListener()
+    {
+        @Override
+        public void onMarkerReached(AudioTrack track) { }
+
+        @Override
+        public void onPeriodicNotification(AudioTrack track)
+        {
+            if (track == audioTrack) guarded(AdCodecVideoPlayer.this::drainAudio);
+        }
+    };
+
+    private void queueInput(MediaExtractor extractor, MediaCodec codec, int index, boolean isVideo)
+    {
+        ByteBuffer buffer = codec.getInputBuffer(index);
+        int size = extractor.readSampleData(buffer, 0);
+        long loopUs = isVideo ? videoLoopUs : audioLoopUs;
+        if (size < 0 && loopUs > 0)
+        {
+            // This track's end of stream: rewind and keep timestamps increasing — no EOS, no flush.
+            extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+            if (isVideo) videoLoopOffsetUs += loopUs;
+            else audioLoopOffsetUs += loopUs;
+            size = extractor.readSampleData(buffer, 0);
+        }
+        if (size < 0)
+        {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            return;
+        }
+        long ptsUs = extractor.getSampleTime() + (isVideo ? videoLoopOffsetUs : audioLoopOffsetUs);
+        int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+        codec.queueInputBuffer(index, 0, size, ptsUs, flags);
+        extractor.advance();
+    }
+
+    private void onVideoOutput(int index, MediaCodec.BufferInfo info)
+    {
+        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+        {
+            videoDecoder.releaseOutputBuffer(index, false);
+            return;
+        }
+        videoFrames.add(new Output(index, info.presentationTimeUs));
+        drainVideo();
+    }
+
+    private void onAudioOutput(int index, MediaCodec.BufferInfo info)
+    {
+        boolean end = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+        if (end || info.size == 0 || info.presentationTimeUs < skipUntilUs)
+        {
+            audioDecoder.releaseOutputBuffer(index, false);
+            if (end) audioEnded = true; // no loop (unknown duration): the system clock takes over
+            return;
+        }
+        Output pcm = new Output(index, info.presentationTimeUs);
+        pcm.data = audioDecoder.getOutputBuffer(index);
+        pcm.data.position(info.offset);
+        pcm.data.limit(info.offset + info.size);
+        audioPcm.add(pcm);
+        drainAudio();
+    }
+
+    /**
+     * Renders held frames whose time has come and drops those too late to show. When the next
+     * frame is early, a wake-up is posted for when it is due instead of polling.
+     */
+    private void drainVideo()
+    {
+        work.removeCallbacks(renderDue);
+        Output frame;
+        while ((frame = videoFrames.peek()) != null)
+        {
+            if (frame.ptsUs < skipUntilUs)
+            {
+                releaseFrame(false); // decoding forward from the sync frame to the resume point
+                continue;
+            }
+            if (!prerolled)
+            {
+                prerolled = true;
+                clockBaseUs = frame.ptsUs;
+                positionUs = frame.ptsUs;
+                Log.d(TAG, "Pre-rolled first frame at " + (frame.ptsUs / 1000) + "ms");
+                postToMain(() ->
+                {
+                    if (metrics != null) metrics.markPrepareEnd();
+                    listener.onVideoPrepared(null);
+                });
+                maybeStartClock();
+                drainAudio();
+            }
+            if (!clockRunning) return;
+
+            long earlyUs = frame.ptsUs - clockUs();
+            if (earlyUs > EARLY_RENDER_US)
+            {
+                work.postDelayed(renderDue, (earlyUs - EARLY_RENDER_US) / 1000 + 1);
+                break;
+            }
+            if (earlyUs < -LATE_DROP_US && !renderNotifyPending)
+            {
+                droppedFrames++;
+                releaseFrame(false);
+                continue;
+            }
+            // Timestamped release lets SurfaceFlinger latch the frame on the right vsync.
+            videoFrames.poll();
+            videoDecoder.releaseOutputBuffer(frame.index, System.nanoTime() + Math.max(0, earlyUs) * 1000);
+            onFrameRendered();
+        }
+        publishPosition();
+    }
+
+    /** Writes held PCM until the AudioTrack is full; its next period notification resumes. */
+    private void drainAudio()
+    {
+        Output pcm;
+        while ((pcm = audioPcm.peek()) != null)
+        {
+            if (!clockRunning || audioTrack == null) return;
+            if (!pcm.marked)
+            {
+                audioMarks.add(new long[] { audioFramesWritten, pcm.ptsUs });
+                pcm.marked = true;
+            }
+            int written = audioTrack.write(pcm.data, pcm.data.remaining(), AudioTrack.WRITE_NON_BLOCKING);
+            if (written < 0) throw new IllegalStateException("AudioTrack write failed: " + written);
+            audioFramesWritten += written / audioFrameBytes;
+            if (pcm.data.hasRemaining()) return;
+            audioPcm.poll();
+            audioDecoder.releaseOutputBuffer(pcm.index, false);
+        }
+    }
+
+    private void createAudioTrack(MediaFormat format)
+    {
+        if (audioTrack != null)
+        {
+            audioTrack.release();
+            audioTrack = null;
+        }
+        resetAudioClock();
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        int encoding = format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                ? format.getInteger(MediaFormat.KEY_PCM_ENCODING) : AudioFormat.ENCODING_PCM_16BIT;
+        int channelMask = channels == 1 ? AudioFormat.CHANNEL_OUT_MONO
+                        : channels == 2 ? AudioFormat.CHANNEL_OUT_STEREO : 0;
+        if (channelMask == 0)
+        {
+            Log.w(TAG, "Unsupported channel count " + channels + ", playing without sound");
+            releaseAudio();
+            return;
+        }
+        int minBuffer = AudioTrack.getMinBufferSize(sampleRate, channelMask, encoding);
+        if (minBuffer <= 0)
+        {
+            Log.w(TAG, "AudioTrack rejects " + sampleRate + "Hz/" + channels + "ch, playing without sound");
+            releaseAudio();
+            return;
+        }
+        audioTrack = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MOVIE)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelMask)
+                        .setEncoding(encoding)
+                        .build())
+                .setBufferSizeInBytes(minBuffer * 2)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .build();
+        audioSampleRate = sampleRate;
+        audioFrameBytes = channels * (encoding == AudioFormat.ENCODING_PCM_FLOAT ? 4
+                : encoding == AudioFormat.ENCODING_PCM_8BIT ? 1 : 2);
+        audioTrack.setPlaybackPositionUpdateListener(audioPeriodListener, work);
+        audioTrack.setPositionNotificationPeriod(Math.max(1, sampleRate * AUDIO_PERIOD_MS / 1000));
+        audioTrack.setVolume(volume);
+        if (clockRunning) audioTrack.play();
+    }
+
+    private void onFrameRendered()
+    {
+        if (!renderNotifyPending) return;
+        renderNotifyPending = false;
+        postToMain(() ->
+        {
+            if (metrics != null) metrics.markFirstFrame();
+            listener.onVideoRenderingStart();
+        });
+    }
+
+    private void startPlayback()
+    {
+        playWhenReady = true;
+        pump();
+    }
+
+    private void pausePlayback()
+    {
+        playWhenReady = false;
+        stopClock();
+        publishPosition();
+    }
+
+    /** Re-runs both output paths after the clock or the surface changed. */
+    private void pump()
+    {
+        if (videoDecoder == null) return;
+        guarded(() ->
+        {
+            maybeStartClock();
+            drainVideo();
+            drainAudio();
+        });
+    }
+
+    /** The clock only runs with a held first frame and the real surface — never into the placeholder. */
+    private void maybeStartClock()
+    {
+        if (clockRunning || !playWhenReady || !prerolled) return;
+        if (outputSurface == null || outputSurface != viewSurface) return;
+        clockStartedAtUs = nowUs();
+        clockSyncedAtUs = clockStartedAtUs;
+        clockRunning = true;
+        if (audioTrack != null) audioTrack.play();
+    }
+
+    private void stopClock()
+    {
+        work.removeCallbacks(renderDue);
+        if (!clockRunning) return;
+        clockBaseUs = clockUs();
+        clockRunning = false;
+        if (audioTrack != null) audioTrack.pause();
+        if (droppedFrames > 0) Log.d(TAG, "Dropped " + droppedFrames + " late frames");
+        droppedFrames = 0;
+    }
+
+    /**
+     * Playback position on the media timeline. While the AudioTrack reports timestamps this is
+     * the audio actually leaving the device. Otherwise (no audio, before the first timestamp
+     * after play(), after the audio ended) it runs on from the last audio reading with the
+     * system clock.
+     */
+    private long clockUs()
+    {
+        if (!clockRunning) return clockBaseUs;
+        long audioUs = audioClockUs();
+        if (audioUs >= 0)
+        {
+            clockBaseUs = audioUs;
+            clockSyncedAtUs = nowUs();
+            return audioUs;
+        }
+        return clockBaseUs + (nowUs() - clockSyncedAtUs);
+    }
+
+    /** Presentation time of the frame the AudioTrack is playing now, or -1 if it can't say. */
+    private long audioClockUs()
+    {
+        if (!audioMaster || audioEnded || audioTrack == null || audioSampleRate <= 0) return -1;
+        if (!audioTrack.getTimestamp(audioTimestamp)) return -1;
+        if (audioTimestamp.nanoTime < clockStartedAtUs * 1000) return -1; // taken before the last pause
+        long frame = audioTimestamp.framePosition
+                + (System.nanoTime() - audioTimestamp.nanoTime) * audioSampleRate / 1_000_000_000L;
+        frame = Math.min(frame, audioFramesWritten); // underrun: the clock waits for the audio
+        while (!audioMarks.isEmpty() && audioMarks.peek()[0] <= frame) audioMark = audioMarks.poll();
+        if (audioMark == null) return -1;
+        return audioMark[1] + (frame - audioMark[0]) * 1_000_000L / audioSampleRate;
+    }
+
+    private void resetAudioClock()
+    {
+        audioMarks.clear();
+        audioMark = null;
+        audioFramesWritten = 0;
+        audioEnded = false;
+    }
+
+    private void publishPosition()
+    {
+        if (!prerolled) return;
+        long pos = clockUs();
+        positionUs = pos;
+        long dur = durationUs;
+        if (!completionPosted && dur > 0 && pos >= dur)
+        {
+            completionPosted = true;
+            Log.d(TAG, "Video completed (playback clock) — duration=" + (dur / 1000) + "ms");
+            postToMain(listener::onVideoCompleted);
+        }
+    }
+
+    private void attachViewSurface()
+    {
+        Surface surface = viewSurface;
+        if (surface == null || videoDecoder == null || outputSurface == surface) return;
+        try
+        {
+            videoDecoder.setOutputSurface(surface);
+            outputSurface = surface;
+            Log.d(TAG, "Switched decoder to view surface" + (prerolled ? " — first frame ready" : ""));
+            pump();
+        }
+        catch (IllegalArgumentException | IllegalStateException e)
+        {
+            // Some decoders refuse a surface swap — fall back to configuring against the view surface.
+            Log.w(TAG, "setOutputSurface failed, re-preparing: " + e.getMessage());
+            String path = currentVideoPath;
+            long dur = durationUs;
+            if (path != null) prepare(path, dur > 0 ? clockUs() % dur : clockUs());
+        }
+    }
+
+    private void detachViewSurface()
+    {
+        stopClock();
+        if (videoDecoder == null || outputSurface == placeholderSurface) return;
+        try
+        {
+            videoDecoder.setOutputSurface(placeholderSurface());
+            outputSurface = placeholderSurface;
+        }
+        catch (IllegalArgumentException | IllegalStateException e)
+        {
+            releaseCodecs();
+        }
+    }
+
+    /** A detached SurfaceTexture the decoder can be configured against before the view exists. */
+    private Surface placeholderSurface()
+    {
+        if (placeholderSurface == null)
+        {
+            placeholderTexture = new SurfaceTexture(false);
+            placeholderSurface = new Surface(placeholderTexture);
+        }
+        return placeholderSurface;
+    }
+
+    private void releasePlaceholder()
+    {
+        if (placeholderSurface != null) placeholderSurface.release();
+        if (placeholderTexture != null) placeholderTexture.release();
+        placeholderSurface = null;
+        placeholderTexture = null;
+    }
+
+    private void releaseFrame(boolean render)
+    {
+        videoDecoder.releaseOutputBuffer(videoFrames.poll().index, render);
+    }
+
+    /** Runs a codec step; any failure ends playback through {@link #fail}. */
+    private void guarded(Runnable step)
+    {
+        try
+        {
+            step.run();
+        }
+        catch (Exception e)
+        {
+            fail(MediaPlayer.MEDIA_ERROR_UNKNOWN, e);
+        }
+    }
+
+    private void releaseCodecs()
+    {
+        stopClock();
+        videoFrames.clear();
+        if (videoDecoder != null)
+        {
+            try { videoDecoder.stop(); } catch (Exception ignored) { }
+            videoDecoder.release();
+            videoDecoder = null;
+        }
+        if (videoExtractor != null)
+        {
+            videoExtractor.release();
+            videoExtractor = null;
+        }
+        outputSurface = null;
+        releaseAudio();
+    }
+
+    private void releaseAudio()
+    {
+        audioPcm.clear();
+        resetAudioClock();
+        if (audioDecoder != null)
+        {
+            try { audioDecoder.stop(); } catch (Exception ignored) { }
+            audioDecoder.release();
+            audioDecoder = null;
+        }
+        if (audioExtractor != null)
+        {
+            audioExtractor.release();
+            audioExtractor = null;
+        }
+        if (audioTrack != null)
+        {
+            audioTrack.release();
+            audioTrack = null;
+        }
+    }
+
+    private void fail(int extra, Exception e)
+    {
+        Log.e(TAG, "Playback failed: " + e.getMessage(), e);
+        releaseCodecs();
+        postToMain(() -> listener.onVideoError(MediaPlayer.MEDIA_ERROR_UNKNOWN, extra));
+    }
+
+    private void postToMain(Runnable r)
+    {
+        main.post(() ->
+        {
+            if (!released) r.run();
+        });
+    }
+
+    private void publishVideoSize(MediaFormat format)
+    {
+        int w = format.getInteger(MediaFormat.KEY_WIDTH);
+        int h = format.getInteger(MediaFormat.KEY_HEIGHT);
+        int rotation = format.containsKey(MediaFormat.KEY_ROTATION) ? format.getInteger(MediaFormat.KEY_ROTATION) : 0;
+        if (rotation == 90 || rotation == 270) { int t = w; w = h; h = t; }
+        videoWidth = w;
+        videoHeight = h;
+        postToMain(this::applyCrop);
+    }
+
+    // --- Decoder selection ---
+
+    /**
+     * Picks the decoder explicitly rather than leaving it to createDecoderByType(): the requested
+     * name when it supports the stream, otherwise the first hardware decoder, otherwise software.
+     * Returns null to fall back to the framework default.
+     */
+    private String selectVideoDecoder(MediaFormat format)
+    {
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        int width = format.getInteger(MediaFormat.KEY_WIDTH);
+        int height = format.getInteger(MediaFormat.KEY_HEIGHT);
+        int[] profileLevel = DecoderCapabilities.profileLevel(format);
+
+        // Cached device profile answers without walking MediaCodecList again.
+        DecoderCapabilities profile = DecoderCapabilities.get();
+        if (preferredDecoder == null && profile != null)
+        {
+            DecoderCapabilities.Entry hw = profile.getHardwareDecoder(mime);
+            if (hw != null && hw.supports(width, height, profileLevel[0], profileLevel[1])) return hw.decoderName;
+        }
+
+        // Probe without frame rate / profile keys — isFormatSupported() rejects formats carrying them on some releases.
+        MediaFormat probe = MediaFormat.createVideoFormat(mime, width, height);
+        String hardware = null;
+        String software = null;
+        for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos())
+        {
+            if (info.isEncoder()) continue;
+            MediaCodecInfo.CodecCapabilities caps;
+            try { caps = info.getCapabilitiesForType(mime); }
+            catch (IllegalArgumentException e) { continue; } // mime not handled by this codec
+            if (!caps.isFormatSupported(probe) || !supportsProfile(caps, profileLevel)) continue;
+
+            String name = info.getName();
+            if (name.equals(preferredDecoder)) return name;
+            if (DecoderCapabilities.isHardware(info)) { if (hardware == null) hardware = name; }
+            else if (software == null) software = name;
+        }
+        if (preferredDecoder != null)
+            Log.w(TAG, "Requested decoder " + preferredDecoder + " cannot play " + mime + " — using " + hardware);
+        return hardware != null ? hardware : software;
+    }
+
+    /** Profile / level checked by hand, since the probe format can't carry them. Unknown passes. */
+    private static boolean supportsProfile(MediaCodecInfo.CodecCapabilities caps, int[] profileLevel)
+    {
+        if (profileLevel[0] <= 0 || caps.profileLevels == null || caps.profileLevels.length == 0) return true;
+        for (MediaCodecInfo.CodecProfileLevel pl : caps.profileLevels)
+            if (pl.profile == profileLevel[0] && (profileLevel[1] <= 0 || pl.level >= profileLevel[1])) return true;
+        return false;
+    }
+
+    private static int selectTrack(MediaExtractor extractor, String mimePrefix)
+    {
+        for (int i = 0; i < extractor.getTrackCount(); i++)
+        {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(mimePrefix)) return i;
+        }
+        return -1;
+    }
+
+    /** A decoder output buffer held until its frame is due or its PCM is written. */
+    private static final class Output
+    {
+        final int index;
+        final long ptsUs;
+        ByteBuffer data; // audio: the part not yet written
+        boolean marked;  // audio: its start is in audioMarks
+
+        Output(int index, long ptsUs)
+        {
+            this.index = index;
+            this.ptsUs = ptsUs;
+        }
+    }
+
+    private static long trackDurationUs(MediaFormat format)
+    {
+        return format != null && format.containsKey(MediaFormat.KEY_DURATION)
+                ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+    }
+
+    private static long nowUs()
+    {
+        return System.nanoTime() / 1000;
+    }
+}
@@ -1,21 +1,36 @@
 package com.ua.toolkit.display;
 
 import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.FrameLayout;
+import android.widget.TextView;
 
 import com.ua.toolkit.AdJsBridge;
+import com.ua.toolkit.WebViewWarmUp;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * Owns the WebView lifecycle for playable (HTML5) ads.
@@ -23,12 +38,20 @@ import java.io.InputStream;
  * lifecycle pause/resume, and teardown. AdActivity delegates all WebView
  * interactions here, keeping itself free of WebView internals.
  *
- * Security note on setAllowUniversalAccessFromFileURLs: this setting permits
- * any file:// page to read any other file:// path accessible to the app UID.
- * The risk is accepted because HTML content is downloaded exclusively from our
- * own ad servers, UASDKVideoCache validates Content-Length and uses atomic
- * rename, and the WebView has no internet access beyond what the HTML itself
- * initiates. Do NOT enable this for WebViews that load third-party URLs.
+ * Security note: the playable is served from a virtual https origin by
+ * {@link PlayableAssetServer}, which only exposes files under the playable's own
+ * directory. File access is disabled entirely, so the page cannot read other
+ * app files through file:// URLs.
+ *
+ * Renderer policy: the renderer is IMPORTANT while the ad plays and WAIVED while it is paused
+ * or preloaded, so under memory pressure the system kills the ad's renderer before the game.
+ * If the renderer dies anyway, the WebView is replaced and the playable reloaded from cache
+ * (the game restarts), up to {@link #MAX_RENDERER_RECOVERIES} times per ad.
+ *
+ * Input idle: with no touch on the game for the step-down timeout, rendering drops to
+ * {@link #IDLE_FPS}. After the pause timeout, the page is paused behind a "Tap to continue"
+ * overlay. A touch undoes either at once. Only the page is affected; AdActivity's reward clock
+ * keeps running.
  */
 public class AdPlayableController
 {
@@ -38,10 +61,22 @@ public class AdPlayableController
         void onError(String message);
     }
 
+    /** Notified each time the renderer process goes away. */
+    public interface RendererListener
+    {
+        /**
+         * @param crashed    true if the renderer crashed, false if the system killed it for memory
+         * @param recovering true if the playable is being reloaded, false if the ad will fail
+         */
+        void onRendererGone(boolean crashed, boolean recovering);
+    }
+
+    static final int MAX_RENDERER_RECOVERIES = 2;
+
     private static final String TAG = "UA/PlayableCtrl";
 
     /**
-     * Injected as the first child of {@code <head>} via {@code loadDataWithBaseURL} before
+     * Injected as the first child of {@code <head>} by {@link PlayableHtmlInjector} before
      * any game scripts run. Intercepts the AudioContext constructor to track all instances,
      * patches {@code prototype.resume}, and installs {@code window.__adMute} /
      * {@code window.__adPause} for two independent audio-control flags:
@@ -49,7 +84,7 @@ public class AdPlayableController
      *   _p — lifecycle/focus pause (phone calls, app-switch, popup expand)
      * Falls back to muting {@code <audio>}/{@code <video>} elements and Howler.js if present.
      */
-    private static final String MUTE_PATCHER_JS =
+    static final String MUTE_PATCHER_JS =
         "(function(){" +
         "var _c=[],_m=false,_p=false;" +
         "var _O=window.AudioContext||window.webkitAudioContext;" +
@@ -77,11 +112,82 @@ public class AdPlayableController
         "};" +
         "})()";
 
+    /**
+     * Runtime probe injected after {@link #MUTE_PATCHER_JS}. Per 5 s window of visible frames it
+     * counts {@code requestAnimationFrame} intervals (frames, frames over 50 ms, worst interval),
+     * long tasks via PerformanceObserver, and {@code performance.memory.usedJSHeapSize} where
+     * Chromium exposes it. It also records DOMContentLoaded, first paint, first contentful paint
+     * and load, then sends one JSON sample per window to {@code AdBridge.reportPerf}. A
+     * rAF gap over 1 s means the page was paused or hidden, so the window restarts instead of
+     * recording a fake stall. It keeps the native {@code requestAnimationFrame}, so it measures
+     * what the device delivers even while {@link #FRAME_THROTTLE_JS} is holding the game back.
+     */
+    static final String PERF_PROBE_JS =
+        "(function(){" +
+        "if(window.__adPerf||!window.AdBridge||!AdBridge.reportPerf)return;" +
+        "var requestAnimationFrame=window.__adRaf||window.requestAnimationFrame.bind(window);" +
+        "var P=performance,W=5000,f=0,s=0,w=0,ln=0,lm=0,last=0,ws=P.now(),ph={dcl:-1,fp:-1,fcp:-1,load:-1};" +
+        "function r(t){if(last){var d=t-last;if(d>1000){f=s=w=ln=lm=0;ws=t;}else{f++;if(d>50)s++;if(d>w)w=d;}}" +
+        "last=t;requestAnimationFrame(r);}" +
+        "requestAnimationFrame(r);" +
+        "try{new PerformanceObserver(function(l){l.getEntries().forEach(function(e){ln++;lm+=e.duration;});})" +
+        ".observe({type:'longtask',buffered:true});}catch(e){}" +
+        "try{new PerformanceObserver(function(l){l.getEntries().forEach(function(e){" +
+        "if(e.name==='first-paint')ph.fp=e.startTime;if(e.name==='first-contentful-paint')ph.fcp=e.startTime;});})" +
+        ".observe({type:'paint',buffered:true});}catch(e){}" +
+        "document.addEventListener('DOMContentLoaded',function(){ph.dcl=P.now();});" +
+        "window.addEventListener('load',function(){ph.load=P.now();});" +
+        "function flush(){var n=P.now(),el=n-ws;if(el<1000||f===0)return;" +
+        "var m=P.memory;" +
+        "try{AdBridge.reportPerf(JSON.stringify({win:Math.round(el),frames:f,fps:f*1000/el,slow:s,worst:Math.round(w)," +
+        "longTasks:ln,longTaskMs:Math.round(lm),heap:m?m.usedJSHeapSize:-1," +
+        "dcl:Math.round(ph.dcl),fp:Math.round(ph.fp),fcp:Math.round(ph.fcp),load:Math.round(ph.load)}));}catch(e){}" +
+        "f=s=w=ln=lm=0;ws=n;}" +
+        "setInterval(flush,W);window.__adPerf=flush;" +
+        "})()";
+
+    /**
+     * Wraps {@code requestAnimationFrame} / {@code cancelAnimationFrame} so rendering can be
+     * capped without pausing the page. {@code window.__adThrottle(fps)} sets the cap (0 = off).
+     * A callback whose frame comes too soon after the last delivered frame is re-queued for the
+     * next vsync; callbacks sharing a frame timestamp all run, so multi-loop games stay in step.
+     * The native function stays reachable as {@code window.__adRaf}.
+     */
+    static final String FRAME_THROTTLE_JS =
+        "(function(){" +
+        "if(window.__adThrottle||!window.requestAnimationFrame)return;" +
+        "var R=window.__adRaf=window.requestAnimationFrame.bind(window),C=window.cancelAnimationFrame.bind(window);" +
+        "var iv=0,last=0,id=0,q={};" +
+        "function gate(k,cb){var g=function(t){if(!(k in q))return;" +
+        "if(iv&&t!==last&&t-last<iv-2){q[k]=R(g);return;}" +
+        "last=t;delete q[k];cb(t);};return g;}" +
+        "window.requestAnimationFrame=function(cb){var k=++id;q[k]=R(gate(k,cb));return k;};" +
+        "window.cancelAnimationFrame=function(k){if(k in q){C(q[k]);delete q[k];}};" +
+        "window.__adThrottle=function(fps){iv=fps>0?1000/fps:0;};" +
+        "})()";
+
+    /** Everything injected into {@code <head>}, in order. */
+    static final String HEAD_SCRIPT = MUTE_PATCHER_JS + ";" + FRAME_THROTTLE_JS + ";"
+            + PlayableCommandChannel.APPLY_JS + ";" + PERF_PROBE_JS;
+
+    /** Throttle reason: the Stage 1 / Stage 3 card is over the game. */
+    public static final int THROTTLE_POPUP_CARD     = 1;
+    /** Throttle reason: the feedback panel is open over the game. */
+    public static final int THROTTLE_FEEDBACK_PANEL = 1 << 1;
+    private static final int THROTTLE_THERMAL       = 1 << 2;
+    private static final int THROTTLE_IDLE          = 1 << 3;
+    private static final int MIN_THERMAL_FPS        = 15;
+    static final int IDLE_FPS                       = 10;
+
+    private static final String IDLE_OVERLAY_TEXT  = "Tap to continue";
+    private static final int    IDLE_OVERLAY_COLOR = Color.argb(153, 0, 0, 0);
+    private static final int    IDLE_TEXT_SIZE_SP  = 18;
+
     /**
      * Safety-net fallback evaluated in {@code onPageFinished}.
-     * No-ops immediately if {@link #MUTE_PATCHER_JS} was already injected via
-     * {@code loadDataWithBaseURL}. Covers the edge case where content was served
-     * without the head injection. Patches prototype.resume on existing AudioContext
+     * No-ops immediately if {@link #MUTE_PATCHER_JS} was already injected into the
+     * document. Covers the edge case where content was served without the head
+     * injection (e.g. the intercept failed to open the file). Patches prototype.resume on existing AudioContext
      * instances rather than the constructor (no new instances to track at this point).
      */
     private static final String MUTE_PATCHER_FALLBACK_JS =
@@ -109,8 +215,45 @@ public class AdPlayableController
         "};" +
         "})()";
 
+    /** Everything evaluated once in {@code onPageFinished}; each part no-ops if already installed. */
+    private static final String PAGE_FINISHED_JS = MUTE_PATCHER_FALLBACK_JS + ";" + FRAME_THROTTLE_JS + ";"
+            + PlayableCommandChannel.APPLY_JS + ";" + PERF_PROBE_JS;
+
+    private final Context appContext;
+    private final AdJsBridge jsBridge;
+    private final MutableContextWrapper contextWrapper; // non-null for preloaded controllers
+    private final Context webViewContext;   // what WebViews are built on (the wrapper if preloaded)
     private WebView webView;
+    private final PlayableCommandChannel commands; // mute / pause / frame cap, coalesced per frame
+    private Runnable onReady;       // null while preloading off-screen
+    private ErrorCallback onError;  // null while preloading off-screen
+    private RendererListener rendererListener;
+    private String loadedPath;
+    private boolean buildArtifacts = true; // false in the :ads process, see setBuildArtifacts
     private boolean pageLoaded = false; // guards onPageFinished double-fire
+    private boolean readyFired = false; // onReady runs once per ad, not again after recovery
+    private boolean loadFailed = false;
+    private boolean paused = false;
+    private boolean recoveryPending = false; // renderer died while paused; reload on resume()
+    private int rendererRecoveries = 0;
+    private volatile PlayableAssetServer server; // answers shouldInterceptRequest for the playable origin
+    private FrameLayout replacedParent; // layout a dead WebView was removed from
+
+    // Frame-rate throttle: any active reason caps rAF at throttleFps (halved when thermal is severe).
+    private int throttleFps = 30;
+    private int throttleReasons = 0;
+    private boolean thermalSevere = false;
+    private int appliedFrameCap = 0;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    // Input-idle power-down (0 = step disabled)
+    private final Handler idleHandler = new Handler(Looper.getMainLooper());
+    private final Runnable idleStepDown = () -> setThrottled(THROTTLE_IDLE, true);
+    private final Runnable idlePause = this::enterIdlePause;
+    private long idleStepDownMs = 10_000;
+    private long idlePauseMs = 30_000;
+    private boolean idlePaused = false;
+    private View idleOverlay;
 
     /**
      * Constructs the controller, configures the WebView, and inserts it into the root
@@ -127,99 +270,236 @@ public class AdPlayableController
                                 Runnable onReady,
                                 ErrorCallback onError)
     {
-        webView = new WebView(context);
-        configureSettings(webView.getSettings());
-        webView.addJavascriptInterface(jsBridge, "AdBridge");
-        webView.setWebViewClient(buildWebViewClient(onReady, onError));
-        FrameLayout.LayoutParams matchParent = new FrameLayout.LayoutParams(
-                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
-        rootLayout.addView(webView, 0, matchParent);
+        this(context, null, jsBridge);
+        this.onReady = onReady;
+        this.onError = onError;
+        addToLayout(rootLayout);
+        watchThermalStatus();
         // load() is deferred to AdActivity.startAd() so it runs after all managers and
         // the popup are fully wired up — mirrors the video path and gives the watchdog
         // a clean start point.
     }
 
+    /**
+     * Off-screen controller for {@link PlayablePreloader}. The WebView is built on a
+     * {@link MutableContextWrapper} around the application context, so {@link #attach} can later
+     * hand it the activity without recreating it. It is laid out at screen size so the game sizes
+     * its canvas correctly before it is shown.
+     */
+    AdPlayableController(Context context)
+    {
+        this(context, new MutableContextWrapper(context.getApplicationContext()), new AdJsBridge());
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        webView.measure(View.MeasureSpec.makeMeasureSpec(dm.widthPixels, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(dm.heightPixels, View.MeasureSpec.EXACTLY));
+        webView.layout(0, 0, dm.widthPixels, dm.heightPixels);
+    }
+
+    private AdPlayableController(Context context, MutableContextWrapper wrapper, AdJsBridge jsBridge)
+    {
+        this.appContext = context.getApplicationContext();
+        this.contextWrapper = wrapper;
+        this.jsBridge = jsBridge;
+        this.webViewContext = wrapper != null ? wrapper : context;
+        webView = createWebView();
+        commands = new PlayableCommandChannel(webView);
+    }
+
     // --- Public API ---
 
     /**
-     * Reads the cached HTML file, injects {@link #MUTE_PATCHER_JS} as the first child of
-     * {@code <head>}, and loads the document via {@code loadDataWithBaseURL} so relative
-     * sub-resource paths (JS bundles, images, CSS) resolve correctly.
+     * Moves a preloaded WebView into the activity: switches its context to {@code activity},
+     * inserts it at index 0 of {@code rootLayout} and installs the callbacks. If the page has
+     * already finished loading, {@code onReady} fires from the following {@link #load} call.
+     */
+    public void attach(Context activity, FrameLayout rootLayout, Runnable onReady, ErrorCallback onError)
+    {
+        if (contextWrapper != null) contextWrapper.setBaseContext(activity);
+        this.onReady = onReady;
+        this.onError = onError;
+        addToLayout(rootLayout);
+        watchThermalStatus();
+    }
+
+    public void setRendererListener(RendererListener listener)
+    {
+        this.rendererListener = listener;
+    }
+
+    /** The bridge registered as {@code window.AdBridge}; a preloaded one is bound on show. */
+    public AdJsBridge getJsBridge()
+    {
+        return jsBridge;
+    }
+
+    /** Path loaded (or loading) in this WebView, or null. */
+    String getLoadedPath()
+    {
+        return loadedPath;
+    }
+
+    boolean hasLoadFailed()
+    {
+        return loadFailed;
+    }
+
+    /**
+     * Loads the cached HTML file from the virtual https origin (see {@link PlayableAssetServer}).
+     * When {@link PlayableBuilder} has a current artifact for it, that pre-patched file is served
+     * as-is. Otherwise the document is streamed with {@link #HEAD_SCRIPT} spliced into
+     * {@code <head>}, and a build is scheduled for the next show (unless
+     * {@link #setBuildArtifacts} turned that off). Relative sub-resource paths (JS
+     * bundles, images, CSS) resolve against the playable's directory either way.
      *
      * @param htmlPath Absolute path to the cached HTML file
-     * @throws Exception if the file cannot be read or decoded
+     * @throws IOException if the file is missing
      */
-    public void load(String htmlPath) throws Exception
+    public void load(String htmlPath) throws IOException
     {
+        if (htmlPath.equals(loadedPath))
+        {
+            // Preloaded: the page is already in this WebView.
+            Log.d(TAG, "load — preloaded " + (pageLoaded ? "and ready" : "and still loading"));
+            if (pageLoaded && onReady != null)
+            {
+                readyFired = true;
+                webView.post(onReady);
+                armIdleTimers();
+            }
+            return;
+        }
+        loadedPath = htmlPath;
         File htmlFile = new File(htmlPath);
-        byte[] raw = readAllBytes(new FileInputStream(htmlFile));
-        String html = new String(raw, "UTF-8");
-        // Inject mute patcher as first child of <head> — before any game scripts.
-        // Injecting inside <head> avoids placing a <script> before <!DOCTYPE>,
-        // which would trigger quirks mode in WebView.
-        String scriptTag = "<script>" + MUTE_PATCHER_JS + "</script>";
-        int headIdx = html.toLowerCase().indexOf("<head>");
-        String patched = headIdx >= 0
-            ? html.substring(0, headIdx + 6) + scriptTag + html.substring(headIdx + 6)
-            : scriptTag + html; // fallback for documents with no <head>
-        // Base URL = parent directory so relative sub-resource paths resolve correctly —
-        // same behaviour as loadUrl("file:///...").
-        String baseUrl = "file://" + htmlFile.getParent() + "/";
-        Log.d(TAG, "load — loadDataWithBaseURL base=" + baseUrl);
-        webView.loadDataWithBaseURL(baseUrl, patched, "text/html", "UTF-8", null);
+        if (!htmlFile.isFile()) throw new FileNotFoundException(htmlPath);
+        PlayableBuilder.Artifact artifact = PlayableBuilder.find(appContext, htmlFile);
+        if (artifact == null && buildArtifacts) PlayableBuilder.buildAsync(appContext, htmlPath);
+        PlayableAssetServer assets = new PlayableAssetServer(htmlFile, artifact, HEAD_SCRIPT);
+        server = assets;
+        String url = assets.documentUrl();
+        Log.d(TAG, "load — " + url + (artifact != null ? " (pre-built)" : " (patched on the fly)"));
+        webView.loadUrl(url);
     }
 
     /**
      * Signals the game to pause audio, then suspends WebView JS timers and rendering.
      * Call order matters: __adPause must fire before pauseTimers/onPause so the game's
-     * own resume() calls cannot override the pause mid-frame.
+     * own resume() calls cannot override the pause mid-frame — so this flushes the
+     * command channel rather than waiting for the next frame.
+     *
+     * pauseTimers() is process-wide, so only the activity's own pause uses it. An off-screen
+     * preload or an idle pause can last minutes, and would stall every other WebView in the
+     * process meanwhile (HeadlessWebViewResolver, the game's own); __adPause and onPause() hold
+     * the page there.
      */
     public void pause()
     {
+        pause(onReady != null); // null while preloading
+    }
+
+    private void pause(boolean pauseTimers)
+    {
+        paused = true;
+        disarmIdleTimers();
         if (webView == null) return;
-        webView.evaluateJavascript("if(typeof window.__adPause==='function')window.__adPause(true);", null);
-        webView.pauseTimers();
+        commands.setPaused(true);
+        commands.flush();
+        if (pauseTimers) webView.pauseTimers();
         webView.onPause();
+        // Nothing visible depends on the renderer now; let the system reclaim it first.
+        webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
     }
 
     /**
      * Resumes WebView rendering and JS timers, then signals the game to resume audio.
      * Call order mirrors {@link #pause()}: rendering must be active before the JS fires.
+     * While paused for input idle, the page stays paused until the overlay is tapped.
      */
     public void resume()
     {
+        if (idlePaused)
+        {
+            // The activity's pause stopped the process-wide timers; the idle pause doesn't need them off.
+            if (webView != null) webView.resumeTimers();
+            return;
+        }
+        paused = false;
+        if (recoveryPending)
+        {
+            recoveryPending = false;
+            recoverRenderer();
+        }
         if (webView == null) return;
+        webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, true);
         webView.onResume();
         webView.resumeTimers();
-        webView.evaluateJavascript("if(typeof window.__adPause==='function')window.__adPause(false);", null);
+        commands.setPaused(false);
+        armIdleTimers();
+    }
+
+    /**
+     * Input-idle timeouts: after {@code stepDownMs} without a touch the frame rate drops to
+     * {@link #IDLE_FPS}; after {@code pauseMs} the page pauses behind a tap-to-continue overlay.
+     * 0 disables a step. Defaults are 10 s and 30 s.
+     */
+    public void setIdleTimeouts(long stepDownMs, long pauseMs)
+    {
+        idleStepDownMs = Math.max(0, stepDownMs);
+        idlePauseMs = Math.max(0, pauseMs);
+        armIdleTimers();
+    }
+
+    /**
+     * Whether {@link #load} may schedule a {@link PlayableBuilder} build when no artifact exists.
+     * The {@code :ads} process turns this off: the game process owns {@code ua_playables} and
+     * prunes it, and {@code :ads} is killed shortly after the ad, usually mid-build. Prebuilt
+     * artifacts are still served. Defaults to true.
+     */
+    public void setBuildArtifacts(boolean build)
+    {
+        buildArtifacts = build;
+    }
+
+    /**
+     * Sets the frame-rate cap used while any throttle reason is active; 0 disables throttling.
+     * Defaults to 30.
+     */
+    public void setThrottleFps(int fps)
+    {
+        throttleFps = Math.max(0, fps);
+        applyFrameCap();
     }
 
     /**
-     * Routes a mute-button toggle to the game via the JS bridge.
+     * Turns a throttle reason ({@link #THROTTLE_POPUP_CARD}, {@link #THROTTLE_FEEDBACK_PANEL})
+     * on or off. Unlike {@link #pause()}, the game keeps running, only at a lower frame rate, and
+     * nothing process-wide is touched.
+     */
+    public void setThrottled(int reason, boolean active)
+    {
+        throttleReasons = active ? (throttleReasons | reason) : (throttleReasons & ~reason);
+        applyFrameCap();
+    }
+
+    /**
+     * Routes a mute-button toggle to the game via the command channel.
      * Used when the user taps the mute button while the game is running.
      */
     public void applyMute(boolean muted)
     {
         if (webView == null) return;
-        webView.evaluateJavascript(
-            "(function(m){" +
-            "if(typeof window.__adMute==='function'){window.__adMute(m);}" +
-            "else{document.querySelectorAll('audio,video').forEach(function(el){el.muted=m;});}" +
-            "})(" + muted + ")", null);
+        commands.setMuted(muted);
     }
 
     /**
      * Re-applies the current mute state immediately after page load, in case the user
-     * toggled the mute button before {@code onPageFinished} fired.
+     * toggled the mute button before {@code onPageFinished} fired. The channel already resends
+     * its state to a new document, so this only matters if the mute state was never set.
      * No-ops when {@code muted} is false — silence requires no action.
      */
     public void applyInitialMute(boolean muted)
     {
         if (webView == null || !muted) return;
-        webView.evaluateJavascript(
-            "if(typeof window.__adMute==='function')window.__adMute(true);" +
-            "else document.querySelectorAll('audio,video').forEach(function(el){el.muted=true;});",
-            null);
+        commands.setMuted(true);
     }
 
     /**
@@ -230,6 +510,16 @@ public class AdPlayableController
      */
     public void destroy()
     {
+        recoveryPending = false;
+        disarmIdleTimers();
+        removeIdleOverlay();
+        commands.moveTo(null);
+        if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+        {
+            PowerManager pm = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+            if (pm != null) pm.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
         if (webView == null) return;
         webView.stopLoading();
         webView.destroy();
@@ -238,55 +528,248 @@ public class AdPlayableController
 
     // --- Private helpers ---
 
+    private WebView createWebView()
+    {
+        WebView view = WebViewWarmUp.create(webViewContext);
+        configureSettings(view.getSettings());
+        view.addJavascriptInterface(jsBridge, "AdBridge");
+        view.setWebViewClient(buildWebViewClient());
+        view.setOnTouchListener((v, event) ->
+        {
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN) onUserInput();
+            return false; // observe only; the page still gets the event
+        });
+        // Waived whenever the view isn't visible, including while detached for preload.
+        view.setRendererPriorityPolicy(paused
+                ? WebView.RENDERER_PRIORITY_WAIVED : WebView.RENDERER_PRIORITY_IMPORTANT, true);
+        return view;
+    }
+
+    /**
+     * The renderer is gone and {@code dead} can't be used again: detach and destroy it, then
+     * recover unless the limit is reached. A preloaded page is dropped (take() then discards
+     * it). While paused, e.g. behind the store, the reload waits for {@link #resume()}.
+     */
+    private void onRendererGone(WebView dead, boolean crashed)
+    {
+        boolean preloading = onReady == null;
+        boolean recovering = !preloading && rendererRecoveries < MAX_RENDERER_RECOVERIES;
+        Log.w(TAG, "Renderer " + (crashed ? "crashed" : "killed")
+                + (preloading ? " while preloading" : recovering ? " — reloading" : " — giving up"));
+        if (rendererListener != null) rendererListener.onRendererGone(crashed, recovering);
+
+        replacedParent = (FrameLayout) dead.getParent();
+        if (replacedParent != null) replacedParent.removeView(dead);
+        commands.moveTo(null);
+        dead.destroy();
+        if (webView == dead) webView = null;
+
+        if (!recovering)
+        {
+            loadFailed = true;
+            if (onError != null) onError.onError("WebView renderer " + (crashed ? "crashed" : "was killed"));
+            return;
+        }
+        rendererRecoveries++;
+        if (paused) recoveryPending = true;
+        else recoverRenderer();
+    }
+
+    /** Builds a fresh WebView in the old one's slot and reloads the playable into it. */
+    private void recoverRenderer()
+    {
+        String path = loadedPath;
+        webView = createWebView();
+        commands.moveTo(webView);
+        if (replacedParent != null) addToLayout(replacedParent);
+        loadedPath = null;
+        pageLoaded = false;
+        if (path == null) return; // died before anything was loaded
+        try
+        {
+            load(path);
+        }
+        catch (IOException e)
+        {
+            loadFailed = true;
+            if (onError != null) onError.onError("Playable reload after renderer loss failed: " + e.getMessage());
+        }
+    }
+
     private void configureSettings(WebSettings ws)
     {
         ws.setJavaScriptEnabled(true);
         ws.setDomStorageEnabled(true);
         ws.setDatabaseEnabled(true);
         ws.setMediaPlaybackRequiresUserGesture(false);
-        // Required to load cached HTML via file:// URI on API 30+; without it the
-        // WebView throws a SecurityException.
-        ws.setAllowFileAccess(true);
-        // Required for HTML5 games that reference sub-resources via relative paths
-        // from a cached index.html — see class-level security note.
-        ws.setAllowUniversalAccessFromFileURLs(true);
+        // Everything is served by PlayableAssetServer over https — no file:// access needed.
+        ws.setAllowFileAccess(false);
+        ws.setAllowContentAccess(false);
     }
 
-    private WebViewClient buildWebViewClient(Runnable onReady, ErrorCallback onError)
+    /** Current cap in fps: 0 when no reason is active or throttling is disabled. */
+    private int frameCap()
+    {
+        int cap = 0;
+        if ((throttleReasons & ~THROTTLE_IDLE) != 0 && throttleFps != 0)
+            cap = thermalSevere ? Math.max(MIN_THERMAL_FPS, throttleFps / 2) : throttleFps;
+        if ((throttleReasons & THROTTLE_IDLE) != 0)
+            cap = cap == 0 ? IDLE_FPS : Math.min(cap, IDLE_FPS);
+        return cap;
+    }
+
+    // --- Input idle ---
+
+    /** A touch reached the game: restore full rate and restart the idle clock. */
+    private void onUserInput()
+    {
+        if (idlePaused) return; // the overlay is on top and takes the tap
+        setThrottled(THROTTLE_IDLE, false);
+        armIdleTimers();
+    }
+
+    private void armIdleTimers()
+    {
+        disarmIdleTimers();
+        if (paused || !readyFired || webView == null) return;
+        if (idleStepDownMs > 0) idleHandler.postDelayed(idleStepDown, idleStepDownMs);
+        if (idlePauseMs > 0) idleHandler.postDelayed(idlePause, idlePauseMs);
+    }
+
+    private void disarmIdleTimers()
+    {
+        idleHandler.removeCallbacks(idleStepDown);
+        idleHandler.removeCallbacks(idlePause);
+    }
+
+    private void enterIdlePause()
+    {
+        ViewGroup parent = webView != null ? (ViewGroup) webView.getParent() : null;
+        if (paused || parent == null) return;
+        Log.d(TAG, "No input for " + idlePauseMs / 1000 + "s — pausing playable");
+        TextView overlay = new TextView(webView.getContext());
+        overlay.setText(IDLE_OVERLAY_TEXT);
+        overlay.setTextColor(Color.WHITE);
+        overlay.setTextSize(TypedValue.COMPLEX_UNIT_SP, IDLE_TEXT_SIZE_SP);
+        overlay.setTypeface(Typeface.DEFAULT_BOLD);
+        overlay.setGravity(Gravity.CENTER);
+        overlay.setBackgroundColor(IDLE_OVERLAY_COLOR);
+        overlay.setOnClickListener(v -> exitIdlePause());
+        // Directly above the WebView, so the ad's own controls stay on top and usable.
+        parent.addView(overlay, parent.indexOfChild(webView) + 1, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        idleOverlay = overlay;
+        pause(false); // the ad's store button stays live; its resolver WebView needs timers
+        idlePaused = true;
+    }
+
+    private void exitIdlePause()
+    {
+        Log.d(TAG, "Tap to continue — resuming playable");
+        idlePaused = false;
+        removeIdleOverlay();
+        setThrottled(THROTTLE_IDLE, false);
+        resume();
+    }
+
+    private void removeIdleOverlay()
+    {
+        if (idleOverlay == null) return;
+        ViewGroup parent = (ViewGroup) idleOverlay.getParent();
+        if (parent != null) parent.removeView(idleOverlay);
+        idleOverlay = null;
+    }
+
+    private void applyFrameCap()
+    {
+        int cap = frameCap();
+        if (cap == appliedFrameCap) return;
+        appliedFrameCap = cap;
+        Log.d(TAG, "Frame cap → " + (cap == 0 ? "off" : cap + "fps") + " (reasons=" + throttleReasons + ")");
+        commands.setFrameCap(cap);
+    }
+
+    /**
+     * Throttles on THERMAL_STATUS_MODERATE and above, harder from SEVERE. The status listener
+     * is API 29+; older devices only get the popup reasons.
+     */
+    private void watchThermalStatus()
+    {
+        if (thermalListener != null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        PowerManager pm = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+        if (pm == null) return;
+        // Delivered on the main thread; the current status is reported immediately on registration.
+        thermalListener = status ->
+        {
+            thermalSevere = status >= PowerManager.THERMAL_STATUS_SEVERE;
+            setThrottled(THROTTLE_THERMAL, status >= PowerManager.THERMAL_STATUS_MODERATE);
+        };
+        pm.addThermalStatusListener(thermalListener);
+    }
+
+    private void addToLayout(FrameLayout rootLayout)
+    {
+        FrameLayout.LayoutParams matchParent = new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
+        rootLayout.addView(webView, 0, matchParent);
+    }
+
+    private WebViewClient buildWebViewClient()
     {
         return new WebViewClient()
         {
+            /** Runs on the WebView's IO thread — files are streamed straight from disk. */
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest req)
+            {
+                PlayableAssetServer assets = server;
+                return assets != null ? assets.serve(req) : null;
+            }
+
             @Override
             public void onPageFinished(WebView view, String url)
             {
                 if (pageLoaded) return;
                 pageLoaded = true;
-                // Safety net: if loadDataWithBaseURL somehow served unpatched content,
+                // Safety net: if the intercept served unpatched content,
                 // window.__adMute will be undefined. The fallback patcher is a no-op if
                 // the full patcher was already injected into <head>.
-                view.evaluateJavascript(MUTE_PATCHER_FALLBACK_JS, null);
-                onReady.run();
+                view.evaluateJavascript(PAGE_FINISHED_JS, null);
+                commands.onDocumentReady(); // anything sent before now went to an unfinished page
+                if (onReady != null && readyFired)
+                {
+                    // Reloaded after renderer loss — the ad is already running.
+                    Log.d(TAG, "Playable reloaded after renderer loss");
+                }
+                else if (onReady != null)
+                {
+                    readyFired = true;
+                    onReady.run();
+                    armIdleTimers();
+                }
+                else
+                {
+                    // Preloading: scripts have run and assets are in; hold the game until shown.
+                    Log.d(TAG, "Preloaded page ready — pausing until attached");
+                    pause();
+                }
+            }
+
+            /** Returning true keeps the app alive; the WebView must not be used afterwards. */
+            @Override
+            public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail)
+            {
+                onRendererGone(view, detail.didCrash());
+                return true;
             }
 
             @Override
             public void onReceivedError(WebView view, WebResourceRequest req, WebResourceError err)
             {
                 if (!req.isForMainFrame()) return;
-                onError.onError("WebView error: " + (err != null ? err.getDescription() : "unknown"));
+                loadFailed = true;
+                if (onError != null) onError.onError("WebView error: " + (err != null ? err.getDescription() : "unknown"));
             }
         };
     }
-
-    private static byte[] readAllBytes(InputStream is) throws IOException
-    {
-        ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        byte[] chunk = new byte[8192];
-        int n;
-        try {
-            while ((n = is.read(chunk)) != -1) buf.write(chunk, 0, n);
-        } finally {
-            is.close();
-        }
-        return buf.toByteArray();
-    }
 }
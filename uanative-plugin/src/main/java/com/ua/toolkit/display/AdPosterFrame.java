@@ -0,0 +1,254 @@
+package com.ua.toolkit.display;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.ua.toolkit.cache.CreativeCache;
+import com.ua.toolkit.cache.CreativePack;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Extracts, downsamples and disk-caches poster frames for video creatives.
+ *
+ * A poster is shown in AdUIManager's poster ImageView from load / resume until the decoder
+ * renders its first frame, so the user never sees the black SurfaceView in between.
+ * Frames are cached next to the creative as {@code <video>.poster.<positionMs>.jpg}:
+ *   position 0 — the first frame, reused on every show of the same creative
+ *   position N — the frame at the last suspend position; only the latest one is kept
+ * When the creative lives in CreativeCache these are its sidecars — kept across restarts and
+ * deleted with the entry.
+ *
+ * All decoding runs on a single background thread; callbacks are delivered on the main thread.
+ */
+public class AdPosterFrame
+{
+    private static final String TAG = "UA/PosterFrame";
+    private static final String POSTER_SUFFIX = ".poster.";
+    private static final int JPEG_QUALITY = 85;
+
+    public interface Callback
+    {
+        /** @param poster the frame, or null if it could not be extracted */
+        void onPosterReady(Bitmap poster);
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(() ->
+        {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "UA-PosterFrame");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    private AdPosterFrame() { }
+
+    /**
+     * Loads the frame at {@code positionMs} (0 = first frame) from the disk cache, extracting it
+     * on a miss, and delivers it on the main thread.
+     *
+     * @param maxWidth  target width in px (screen width) — the frame is scaled to cover, never upscaled
+     * @param maxHeight target height in px (screen height)
+     */
+    public static void load(String videoPath, int positionMs, int maxWidth, int maxHeight, Callback callback)
+    {
+        if (videoPath == null || videoPath.isEmpty())
+        {
+            callback.onPosterReady(null);
+            return;
+        }
+        EXECUTOR.execute(() ->
+        {
+            Bitmap poster = loadBlocking(videoPath, positionMs, maxWidth, maxHeight);
+            MAIN.post(() -> callback.onPosterReady(poster));
+        });
+    }
+
+    /**
+     * Ensures the first-frame poster is on disk without decoding it into memory for display.
+     * Blocking — for background callers such as the prefetch pipeline.
+     *
+     * @return true if a poster file exists after the call
+     */
+    public static boolean prefetchBlocking(String videoPath, int maxWidth, int maxHeight)
+    {
+        if (packPosterRange(videoPath) != null) return true;
+        File cached = posterFile(videoPath, 0);
+        if (isFresh(cached, videoPath)) return true;
+        Bitmap poster = extract(videoPath, 0, maxWidth, maxHeight);
+        if (poster == null) return false;
+        write(poster, cached);
+        poster.recycle();
+        return cached.exists();
+    }
+
+    // --- Private helpers ---
+
+    private static Bitmap loadBlocking(String videoPath, int positionMs, int maxWidth, int maxHeight)
+    {
+        if (positionMs == 0 && packPosterRange(videoPath) != null)
+        {
+            // Packs ship their first-frame poster — decode it in place, no extraction or cache file.
+            try
+            {
+                Bitmap bmp = CreativePack.open(videoPath).decodeBitmap(CreativePack.Segment.POSTER);
+                if (bmp != null) return bmp;
+            }
+            catch (IOException e)
+            {
+                Log.w(TAG, "pack poster unreadable: " + e.getMessage());
+            }
+        }
+
+        File cached = posterFile(videoPath, positionMs);
+        if (isFresh(cached, videoPath))
+        {
+            Bitmap bmp = BitmapFactory.decodeFile(cached.getAbsolutePath());
+            if (bmp != null)
+            {
+                Log.d(TAG, "cache hit — " + cached.getName());
+                return bmp;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Bitmap poster = extract(videoPath, positionMs, maxWidth, maxHeight);
+        if (poster == null) return null;
+        Log.d(TAG, "extracted frame at " + positionMs + "ms (" + poster.getWidth() + "x" + poster.getHeight()
+                + ") in " + (System.currentTimeMillis() - start) + "ms");
+
+        if (positionMs > 0) deleteResumePosters(videoPath);
+        write(poster, cached);
+        return poster;
+    }
+
+    private static Bitmap extract(String videoPath, int positionMs, int maxWidth, int maxHeight)
+    {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try
+        {
+            CreativePack.setVideoDataSource(retriever, videoPath);
+            int[] size = scaledSize(retriever, maxWidth, maxHeight);
+            long timeUs = positionMs * 1000L;
+            // First frame is always a sync frame; an arbitrary suspend position needs the exact
+            // frame so the poster lines up with where playback resumes.
+            int option = positionMs > 0 ? MediaMetadataRetriever.OPTION_CLOSEST
+                                        : MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 && size != null)
+                return retriever.getScaledFrameAtTime(timeUs, option, size[0], size[1]);
+
+            Bitmap full = retriever.getFrameAtTime(timeUs, option);
+            if (full == null || size == null || (full.getWidth() == size[0] && full.getHeight() == size[1]))
+                return full;
+            Bitmap scaled = Bitmap.createScaledBitmap(full, size[0], size[1], true);
+            if (scaled != full) full.recycle();
+            return scaled;
+        }
+        catch (Exception e)
+        {
+            Log.w(TAG, "extract failed for " + videoPath + ": " + e.getMessage());
+            return null;
+        }
+        finally
+        {
+            try { retriever.release(); } catch (Exception ignored) { }
+        }
+    }
+
+    /**
+     * Display size of the frame scaled to cover {@code maxWidth x maxHeight} (the same crop the
+     * player applies with SCALE_TO_FIT_WITH_CROPPING), capped at the native size.
+     * Returns null if the video dimensions are unknown.
+     */
+    private static int[] scaledSize(MediaMetadataRetriever retriever, int maxWidth, int maxHeight)
+    {
+        int w = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        int h = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        int rotation = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+        if (rotation == 90 || rotation == 270) { int t = w; w = h; h = t; }
+        if (w <= 0 || h <= 0 || maxWidth <= 0 || maxHeight <= 0) return null;
+
+        float scale = Math.min(1f, Math.max((float) maxWidth / w, (float) maxHeight / h));
+        return new int[] { Math.max(1, Math.round(w * scale)), Math.max(1, Math.round(h * scale)) };
+    }
+
+    private static CreativePack.Range packPosterRange(String videoPath)
+    {
+        if (!CreativePack.isPack(videoPath)) return null;
+        try { return CreativePack.open(videoPath).get(CreativePack.Segment.POSTER); }
+        catch (IOException e) { return null; }
+    }
+
+    static File posterFile(String videoPath, int positionMs)
+    {
+        return new File(videoPath + POSTER_SUFFIX + Math.max(0, positionMs) + ".jpg");
+    }
+
+    /** A cached poster is stale if the creative was replaced after it was written. */
+    private static boolean isFresh(File poster, String videoPath)
+    {
+        return poster.exists() && poster.length() > 0
+                && poster.lastModified() >= new File(videoPath).lastModified();
+    }
+
+    /** Only the latest suspend-position poster is useful — drop older ones, keep the first frame. */
+    private static void deleteResumePosters(String videoPath)
+    {
+        File video = new File(videoPath);
+        File dir = video.getParentFile();
+        if (dir == null) return;
+        String prefix = video.getName() + POSTER_SUFFIX;
+        File[] stale = dir.listFiles((d, name) ->
+                name.startsWith(prefix) && !name.equals(prefix + "0.jpg"));
+        if (stale == null) return;
+        for (File f : stale)
+        {
+            if (!f.delete()) Log.w(TAG, "could not delete stale poster " + f.getName());
+        }
+    }
+
+    /** Writes via a temp file + rename so a crash mid-write never leaves a truncated JPEG behind. */
+    private static void write(Bitmap poster, File target)
+    {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp))
+        {
+            poster.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "write failed for " + target.getName() + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(target))
+        {
+            Log.w(TAG, "rename failed for " + target.getName());
+            tmp.delete();
+            return;
+        }
+        CreativeCache.sidecarWritten(target); // counted against the cache budget, evicted with the creative
+    }
+
+    private static int parseInt(String value)
+    {
+        if (value == null) return 0;
+        try { return Integer.parseInt(value); }
+        catch (NumberFormatException e) { return 0; }
+    }
+}
@@ -2,11 +2,14 @@ package com.ua.toolkit.display;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.graphics.drawable.GradientDrawable;
 import android.util.TypedValue;
 import android.os.Build;
 import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.TextureView;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowInsets;
@@ -15,6 +18,7 @@ import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.VideoView;
 
@@ -53,7 +57,10 @@ public class AdUIManager
 
     // Views
     private FrameLayout rootLayout;
+    private FrameLayout videoContainer; // video surface + posterView — always at root index 0
     private VideoView videoView;
+    private TextureView textureView;    // replaces videoView when the codec engine is used
+    private ImageView posterView;
     private ImageButton muteButton;
     private TextView timerText;
     private TextView skipButton;
@@ -72,6 +79,7 @@ public class AdUIManager
     private boolean      disableMuteButton  = false;
     private boolean      disableSkipButton  = false;
     private boolean      isPlayable         = false;
+    private boolean      useTextureView     = false;
     private final AdUILayout _layout = new AdUILayout();
 
     // Flow B
@@ -98,6 +106,7 @@ public class AdUIManager
     public void setRewardTextColor(String hex)               { this.rewardTextColor = hex; }
     public void setFlowB(boolean flowB)                      { this.isFlowB = flowB; }
     public void setPlayable(boolean playable)                 { this.isPlayable = playable; }
+    public void setUseTextureView(boolean use)                { this.useTextureView = use; }
     public void setOpenStoreButtonText(String text)           { if (text != null && !text.isEmpty()) this.openStoreButtonText = text; }
 
     public void setInsetsReadyCallback(InsetsReadyCallback cb)
@@ -135,12 +144,23 @@ public class AdUIManager
         rootLayout.setBackgroundColor(Color.BLACK);
 
         createVideoView();
+        createPosterView();
         createMuteButton();
         createTimerText();
         createButtonContainer();
         setupInsetHandling();
 
-        rootLayout.addView(videoView);
+        // Poster sits above the video surface inside one container: a SurfaceView punches a
+        // transparent hole through views drawn before it, so the poster must be drawn after.
+        // Keeping both in a container preserves the "video surface at index 0" contract that
+        // AdPopup and AdPlayableController rely on.
+        videoContainer = new FrameLayout(activity);
+        videoContainer.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        videoContainer.addView(useTextureView ? textureView : videoView);
+        videoContainer.addView(posterView);
+
+        rootLayout.addView(videoContainer);
         rootLayout.addView(timerText);
         rootLayout.addView(muteButton);
         rootLayout.addView(buttonContainer);
@@ -151,23 +171,44 @@ public class AdUIManager
     @SuppressLint("ClickableViewAccessibility")
     private void createVideoView()
     {
-        // FillVideoView overrides onMeasure to skip VideoView's built-in aspect-ratio
-        // correction, ensuring the surface fills the screen on any device ratio (16:9, 20:9, etc.)
-        videoView = new FillVideoView(activity);
         FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
                 FrameLayout.LayoutParams.MATCH_PARENT,
                 FrameLayout.LayoutParams.MATCH_PARENT,
                 Gravity.CENTER);
-        videoView.setLayoutParams(params);
-
-        videoView.setOnTouchListener((v, event) ->
+        View.OnTouchListener touch = (v, event) ->
         {
-            if (event.getAction() == android.view.MotionEvent.ACTION_UP)
+            if (event.getAction() == MotionEvent.ACTION_UP)
             {
                 listener.onVideoTouched();
             }
             return true;
-        });
+        };
+
+        if (useTextureView)
+        {
+            // Codec engine: a TextureView fills the screen and AdCodecVideoPlayer applies the
+            // centre-crop through setTransform(), so no measuring override is needed.
+            textureView = new TextureView(activity);
+            textureView.setLayoutParams(params);
+            textureView.setOnTouchListener(touch);
+            return;
+        }
+
+        // FillVideoView overrides onMeasure to skip VideoView's built-in aspect-ratio
+        // correction, ensuring the surface fills the screen on any device ratio (16:9, 20:9, etc.)
+        videoView = new FillVideoView(activity);
+        videoView.setLayoutParams(params);
+        videoView.setOnTouchListener(touch);
+    }
+
+    private void createPosterView()
+    {
+        // Not clickable — touches fall through to the VideoView's tap listener underneath.
+        posterView = new ImageView(activity);
+        posterView.setScaleType(ImageView.ScaleType.CENTER_CROP); // same crop as SCALE_TO_FIT_WITH_CROPPING
+        posterView.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        posterView.setVisibility(View.GONE);
     }
 
     private void createMuteButton()
@@ -198,9 +239,9 @@ public class AdUIManager
 
     private void createTimerText()
     {
-        GradientDrawable bg = new GradientDrawable();
-        bg.setColor(AdVisualsHelper.parseColor(_layout.timerBackgroundColor, Color.BLACK));
-        bg.setCornerRadius(dpToPx(_layout.timerCornerRadiusDp));
+        GradientDrawable bg = AdVisualsHelper.makeRoundedBackground(
+                AdVisualsHelper.parseColor(_layout.timerBackgroundColor, Color.BLACK),
+                dpToPx(_layout.timerCornerRadiusDp));
 
         timerText = new TextView(activity);
         timerText.setTextColor(AdVisualsHelper.parseColor(rewardTextColor, Color.WHITE));
@@ -488,6 +529,22 @@ public class AdUIManager
         if (closeButton != null) closeButton.setVisibility(View.GONE);
     }
 
+    /** Covers the video surface with a still frame until {@link #hidePoster()} is called. */
+    public void showPoster(Bitmap poster)
+    {
+        if (posterView == null || poster == null) return;
+        posterView.setImageBitmap(poster);
+        posterView.setVisibility(View.VISIBLE);
+    }
+
+    /** Called once the decoder has rendered a frame — the surface is no longer black. */
+    public void hidePoster()
+    {
+        if (posterView == null || posterView.getVisibility() != View.VISIBLE) return;
+        posterView.setVisibility(View.GONE);
+        posterView.setImageDrawable(null);
+    }
+
     public void updateMuteButton(boolean isMuted)
     {
         if (muteButton != null) updateMuteButtonIcon(isMuted);
@@ -565,6 +622,19 @@ public class AdUIManager
         return videoView;
     }
 
+    /** Non-null only when {@link #setUseTextureView(boolean)} was enabled before setupUI(). */
+    public TextureView getTextureView()
+    {
+        return textureView;
+    }
+
+    /** Playable ads: drops the video surface and poster so the WebView can take index 0. */
+    public void removeVideoView()
+    {
+        if (videoContainer != null && videoContainer.getParent() != null)
+            rootLayout.removeView(videoContainer);
+    }
+
     public FrameLayout getRootLayout()
     {
         return rootLayout;
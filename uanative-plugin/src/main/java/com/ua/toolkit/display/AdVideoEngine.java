@@ -0,0 +1,39 @@
+package com.ua.toolkit.display;
+
+import com.ua.toolkit.AdMetrics;
+
+/**
+ * Playback contract shared by the VideoView-backed {@link AdVideoPlayer} and the opt-in
+ * MediaCodec-backed {@link AdCodecVideoPlayer}. Both report through {@link AdVideoPlayer.Listener},
+ * so AdActivity drives either engine the same way.
+ */
+public interface AdVideoEngine
+{
+    void load(String videoPath);
+
+    void pause();
+
+    /** Pause and release as much as the engine allows while the activity is backgrounded. */
+    void suspend();
+
+    void resume();
+
+    void stop();
+
+    /** Restores video position from a saved bundle (process death recovery). */
+    void setSavedPosition(int position);
+
+    void setMetrics(AdMetrics metrics);
+
+    int getLastPausedPosition();
+
+    int getCurrentPosition();
+
+    int getDuration();
+
+    /**
+     * Volume sink for AdAudioManager, or null when volume is applied through the MediaPlayer
+     * handed to {@link AdVideoPlayer.Listener#onVideoPrepared}.
+     */
+    AdAudioManager.VolumeControl getVolumeControl();
+}
@@ -2,21 +2,36 @@ package com.ua.toolkit.display;
 
 import android.media.MediaPlayer;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.SurfaceHolder;
 import android.widget.VideoView;
 
+import com.ua.toolkit.AdMetrics;
+import com.ua.toolkit.cache.CreativePack;
+import com.ua.toolkit.cache.CreativePackProvider;
+
 import java.io.File;
 
 /**
  * Manages video playback for ads.
+ *
+ * Looping is gapless: the MediaPlayer loops natively via {@code setLooping(true)}, so the
+ * decoder never flushes or re-seeks between iterations. Because a looping MediaPlayer never
+ * fires {@code OnCompletionListener}, the first pass is detected from the playback clock
+ * instead (see {@link #completionWatcher}) and reported exactly once.
  */
-public class AdVideoPlayer
+public class AdVideoPlayer implements AdVideoEngine
 {
     private static final String TAG = "UA/VideoPlayer";
+    private static final int COMPLETION_POLL_MS      = 100;
+    private static final int COMPLETION_TOLERANCE_MS = 150; // treat "this close to the end" as completed
 
     public interface Listener
     {
         void onVideoPrepared(MediaPlayer mediaPlayer);
+        void onVideoRenderingStart(); // first frame on screen after each (re-)prepare
         void onVideoCompleted();
         void onVideoError(int what, int extra);
     }
@@ -27,21 +42,84 @@ public class AdVideoPlayer
     private int lastPausedPosition = 0;
     private String currentVideoPath;
     private boolean isSuspended = false;
+    private boolean completionNotified = false; // onVideoCompleted fires once per ad, not per loop
+    private int lastPolledPosition = 0;
+    private final Handler completionHandler = new Handler(Looper.getMainLooper());
+    private AdMetrics metrics;
+
+    /**
+     * Polls the playback clock while the video is playing and reports the first full pass.
+     * Completion is either the position reaching the end (within COMPLETION_TOLERANCE_MS) or
+     * the position wrapping back towards zero — the latter catches the case where the native
+     * loop restarts between two polls.
+     */
+    private final Runnable completionWatcher = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (completionNotified || videoView == null) return;
+            if (videoView.isPlaying())
+            {
+                int duration = videoView.getDuration();
+                int pos = videoView.getCurrentPosition();
+                boolean reachedEnd = duration > 0 && pos >= duration - COMPLETION_TOLERANCE_MS;
+                boolean wrapped = duration > 0 && pos + duration / 2 < lastPolledPosition;
+                lastPolledPosition = pos;
+                if (reachedEnd || wrapped)
+                {
+                    Log.d(TAG, "Video completed (playback clock) — pos=" + pos + " duration=" + duration
+                            + " wrapped=" + wrapped);
+                    notifyCompleted();
+                    return;
+                }
+            }
+            completionHandler.postDelayed(this, COMPLETION_POLL_MS);
+        }
+    };
 
     public AdVideoPlayer(VideoView videoView, Listener listener)
     {
         this.videoView = videoView;
         this.listener = listener;
+        // VideoView registers its own holder callback; this one only observes for metrics.
+        videoView.getHolder().addCallback(new SurfaceHolder.Callback()
+        {
+            @Override public void surfaceCreated(SurfaceHolder holder)
+            {
+                if (metrics != null) metrics.markSurfaceCreated();
+            }
+            @Override public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) { }
+            @Override public void surfaceDestroyed(SurfaceHolder holder) { }
+        });
     }
 
+    /** Attaches the per-ad metrics sink. Optional — all stamps are skipped when null. */
+    @Override
+    public void setMetrics(AdMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
     public void load(String videoPath)
     {
         currentVideoPath = videoPath;
-        videoView.setVideoPath(videoPath);
+        if (metrics != null) metrics.markPrepareStart();
+        // Packs play their VIDEO segment in place: VideoView only takes a path or Uri, so the
+        // (fd, offset, length) is handed to MediaPlayer through CreativePackProvider.
+        if (CreativePack.isPack(videoPath))
+            videoView.setVideoURI(CreativePackProvider.videoUri(videoView.getContext(), videoPath));
+        else
+            videoView.setVideoPath(videoPath);
 
         videoView.setOnPreparedListener(mp ->
         {
             mp.setVideoScalingMode(MediaPlayer.VIDEO_SCALING_MODE_SCALE_TO_FIT_WITH_CROPPING);
+            // Native looping keeps the decoder running across the loop point — no flush, no seek,
+            // no stall. Completion is detected from the playback clock by completionWatcher.
+            mp.setLooping(true);
+            if (metrics != null) metrics.markPrepareEnd();
             if (savedPosition > 0)
             {
                 final int seekTarget = savedPosition;
@@ -53,6 +131,7 @@ public class AdVideoPlayer
                 {
                     m.setOnSeekCompleteListener(null);
                     videoView.start();
+                    startCompletionWatcher();
                 });
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
                     mp.seekTo(seekTarget, MediaPlayer.SEEK_CLOSEST);
@@ -64,13 +143,36 @@ public class AdVideoPlayer
                 Log.d(TAG, "Video prepared — starting from beginning");
                 listener.onVideoPrepared(mp);
                 videoView.start();
+                startCompletionWatcher();
             }
         });
 
+        videoView.setOnInfoListener((mp, what, extra) ->
+        {
+            switch (what)
+            {
+                case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                    Log.d(TAG, "First frame rendered");
+                    if (metrics != null) metrics.markFirstFrame();
+                    listener.onVideoRenderingStart();
+                    break;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                    Log.d(TAG, "Decoder stall started");
+                    if (metrics != null) metrics.markStallStart();
+                    break;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                    if (metrics != null) metrics.markStallEnd();
+                    break;
+            }
+            return false; // observe only — let VideoView handle the event as before
+        });
+
+        // Fallback only — a looping MediaPlayer does not fire completion. Kept for decoders that
+        // ignore setLooping, where the old seek-and-restart is the only way to keep playing.
         videoView.setOnCompletionListener(mp ->
         {
-            Log.d(TAG, "Video completed");
-            listener.onVideoCompleted();
+            Log.d(TAG, "Video completed (OnCompletionListener) — looping not honoured, restarting");
+            notifyCompleted();
             videoView.seekTo(0);
             videoView.start();
         });
@@ -89,6 +191,27 @@ public class AdVideoPlayer
         });
     }
 
+    private void startCompletionWatcher()
+    {
+        completionHandler.removeCallbacks(completionWatcher);
+        if (completionNotified) return;
+        lastPolledPosition = 0;
+        completionHandler.postDelayed(completionWatcher, COMPLETION_POLL_MS);
+    }
+
+    private void stopCompletionWatcher()
+    {
+        completionHandler.removeCallbacks(completionWatcher);
+    }
+
+    private void notifyCompleted()
+    {
+        stopCompletionWatcher();
+        if (completionNotified) return;
+        completionNotified = true;
+        listener.onVideoCompleted();
+    }
+
     private static String describeError(int what, int extra)
     {
         String whatStr;
@@ -113,8 +236,10 @@ public class AdVideoPlayer
         return whatStr + " / " + extraStr;
     }
 
+    @Override
     public void pause()
     {
+        stopCompletionWatcher();
         if (videoView != null && videoView.isPlaying())
         {
             savedPosition = videoView.getCurrentPosition();
@@ -129,8 +254,10 @@ public class AdVideoPlayer
      * reducing RAM footprint while the activity is backgrounded.
      * Call resume() to reload and resume from the saved position.
      */
+    @Override
     public void suspend()
     {
+        stopCompletionWatcher();
         if (videoView != null)
         {
             if (videoView.isPlaying())
@@ -144,6 +271,7 @@ public class AdVideoPlayer
         }
     }
 
+    @Override
     public void resume()
     {
         if (videoView == null) return;
@@ -152,48 +280,59 @@ public class AdVideoPlayer
             // MediaPlayer was fully released — reload from saved position
             isSuspended = false;
             Log.d(TAG, "resume: was suspended — reloading from position=" + savedPosition);
+            if (metrics != null) metrics.markResumeStart();
             load(currentVideoPath);
             return;
         }
-        int pos = videoView.getCurrentPosition();
-        Log.d(TAG, "Video resume (savedPosition=" + savedPosition + " currentPosition=" + pos + ")");
-        if (pos > 0)
-        {
-            // Seek to current position before starting — forces the SurfaceView to decode
-            // and display the current frame immediately, preventing the black flash that
-            // occurs when the surface is recreated after returning from the Play Store.
-            videoView.seekTo(pos);
-        }
+        Log.d(TAG, "Video resume (savedPosition=" + savedPosition
+                + " currentPosition=" + videoView.getCurrentPosition() + ")");
+        // No seek-to-current-position here: the surface survives a plain pause(), and the
+        // suspend() path (where the surface is recreated) is masked by the AdPosterFrame
+        // poster until MEDIA_INFO_VIDEO_RENDERING_START — no extra decode needed.
         videoView.start();
+        startCompletionWatcher();
     }
 
     /** Restores video position from a saved bundle (process death recovery). */
+    @Override
     public void setSavedPosition(int position)
     {
         this.savedPosition = position;
         Log.d(TAG, "setSavedPosition: " + position);
     }
 
+    @Override
     public void stop()
     {
+        stopCompletionWatcher();
         if (videoView != null)
         {
             videoView.stopPlayback();
         }
     }
 
+    @Override
     public int getLastPausedPosition()
     {
         return lastPausedPosition;
     }
 
+    @Override
     public int getCurrentPosition()
     {
         return videoView != null ? videoView.getCurrentPosition() : 0;
     }
 
+    @Override
     public int getDuration()
     {
         return videoView != null ? videoView.getDuration() : 0;
     }
+
+    /** Volume goes through the MediaPlayer passed to {@link Listener#onVideoPrepared}. */
+    @Override
+    public AdAudioManager.VolumeControl getVolumeControl()
+    {
+        return null;
+    }
 }
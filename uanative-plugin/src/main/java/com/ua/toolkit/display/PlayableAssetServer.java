@@ -0,0 +1,159 @@
+package com.ua.toolkit.display;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serves a cached playable from a virtual {@code https://} origin inside
+ * {@code shouldInterceptRequest}.
+ *
+ * {@code https://appassets.androidplatform.net/playable/<relative path>} maps to the playable's
+ * directory on disk. That host is reserved for exactly this use and never resolves on the
+ * network. Over https, Chromium parses the document incrementally as the stream arrives, and
+ * V8's code cache applies to scripts, so repeat shows of the same playable skip recompilation.
+ * Neither happens for data: or file: loads. Relative sub-resources keep working because they
+ * resolve against the same origin and directory.
+ *
+ * The main document is the {@link PlayableBuilder} artifact when one exists, otherwise the source
+ * streamed through {@link PlayableHtmlInjector}. Assets the builder extracted are served from
+ * {@code __ua_assets/}, and shared scripts from {@code /ua-lib/} (see {@link PlayableLibraryCache})
+ * with long-lived cache headers, since their content never changes under a name. Everything
+ * else is streamed as-is from the playable directory. Paths are
+ * canonicalised and must stay inside their directory. Anything else, including {@code ../}
+ * escapes, gets a 404, so the page can read nothing but its own files.
+ */
+final class PlayableAssetServer
+{
+    private static final String TAG = "UA/PlayableServer";
+    static final String HOST   = "appassets.androidplatform.net";
+    static final String PREFIX = "/playable/";
+
+    private final File root;     // canonical
+    private final File document; // canonical
+    private final PlayableBuilder.Artifact artifact; // null = patch on the fly
+    private final File assetsRoot; // canonical, null without artifact
+    private final String script;
+
+    PlayableAssetServer(File htmlFile, PlayableBuilder.Artifact artifact, String script) throws IOException
+    {
+        this.document = htmlFile.getCanonicalFile();
+        this.root = document.getParentFile();
+        this.artifact = artifact;
+        this.assetsRoot = artifact != null ? artifact.assetsDir.getCanonicalFile() : null;
+        this.script = script;
+    }
+
+    /** URL to pass to {@code WebView.loadUrl}. */
+    String documentUrl()
+    {
+        return new Uri.Builder().scheme("https").authority(HOST)
+                .path(PREFIX + document.getName()).build().toString();
+    }
+
+    /** @return a response for requests to the virtual origin, or null for everything else */
+    WebResourceResponse serve(WebResourceRequest request)
+    {
+        Uri url = request.getUrl();
+        if (!"https".equals(url.getScheme()) || !HOST.equals(url.getHost())) return null;
+        String path = url.getPath();
+        if ("GET".equals(request.getMethod()) && path != null && path.startsWith(PlayableLibraryCache.URL_PREFIX))
+            return serveLibrary(path.substring(PlayableLibraryCache.URL_PREFIX.length()));
+        if (!"GET".equals(request.getMethod()) || path == null || !path.startsWith(PREFIX))
+            return error(404, "Not Found");
+
+        try
+        {
+            String relative = path.substring(PREFIX.length());
+            String assetsPrefix = PlayableBuilder.ASSETS_DIR + "/";
+            File file = assetsRoot != null && relative.startsWith(assetsPrefix)
+                    ? resolve(assetsRoot, relative.substring(assetsPrefix.length()))
+                    : resolve(root, relative);
+            if (file == null)
+            {
+                Log.w(TAG, "Blocked request outside playable: " + path);
+                return error(404, "Not Found");
+            }
+            if (!file.isFile()) return error(404, "Not Found");
+            InputStream body;
+            if (!file.equals(document)) body = new FileInputStream(file);
+            else if (artifact != null) body = new FileInputStream(artifact.document);
+            else body = PlayableHtmlInjector.open(file, script);
+            String mime = mimeType(file.getName());
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "no-cache"); // the files on disk are the cache
+            return new WebResourceResponse(mime, isText(mime) ? "UTF-8" : null, 200, "OK", headers, body);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not serve " + path + ": " + e.getMessage());
+            return error(404, "Not Found");
+        }
+    }
+
+    private WebResourceResponse serveLibrary(String name)
+    {
+        File file = artifact != null ? PlayableLibraryCache.resolve(artifact.libraryDir, name) : null;
+        if (file == null) return error(404, "Not Found");
+        try
+        {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=31536000, immutable"); // named by content
+            return new WebResourceResponse("text/javascript", "UTF-8", 200, "OK", headers, new FileInputStream(file));
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not serve library " + name + ": " + e.getMessage());
+            return error(404, "Not Found");
+        }
+    }
+
+    /** Canonical file for {@code relative} under {@code base}, or null if it escapes it. */
+    private static File resolve(File base, String relative) throws IOException
+    {
+        File file = new File(base, relative).getCanonicalFile();
+        return file.getPath().startsWith(base.getPath() + File.separator) ? file : null;
+    }
+
+    private static WebResourceResponse error(int status, String reason)
+    {
+        return new WebResourceResponse("text/plain", "UTF-8", status, reason, new HashMap<>(),
+                new ByteArrayInputStream(new byte[0]));
+    }
+
+    static String mimeType(String name)
+    {
+        int dot = name.lastIndexOf('.');
+        String ext = dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        switch (ext)
+        {
+            // Not reliably in MimeTypeMap on older builds; scripts and wasm need the exact type.
+            case "js":
+            case "mjs":  return "text/javascript";
+            case "wasm": return "application/wasm";
+            case "json": return "application/json";
+            case "html":
+            case "htm":  return "text/html";
+            case "css":  return "text/css";
+            default:
+                String mime = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext);
+                return mime != null ? mime : "application/octet-stream";
+        }
+    }
+
+    private static boolean isText(String mime)
+    {
+        return mime.startsWith("text/") || mime.equals("application/json");
+    }
+}
@@ -0,0 +1,413 @@
+package com.ua.toolkit.display;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Base64;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a cached playable into a ready-to-serve artifact once, so showing it is only a file open.
+ *
+ * The build:
+ * <ol>
+ *   <li>Decodes the document with its declared encoding (BOM, then {@code charset=} in the first
+ *       KB) and re-encodes it as UTF-8 without a BOM — the encoding {@link PlayableAssetServer}
+ *       announces.</li>
+ *   <li>Moves large inline base64 blobs in {@code src=}, {@code href=} and CSS {@code url()} into
+ *       sibling files under {@code __ua_assets/}, named by content hash. They are then fetched and
+ *       cached like any other sub-resource instead of being parsed out of the document. Blobs
+ *       inside {@code <script>} bodies are left alone, since game code may decode them itself.</li>
+ *   <li>Moves shared classic scripts of {@link PlayableLibraryCache#MIN_BYTES} or more, whether
+ *       inline or relative {@code src} files, into {@link PlayableLibraryCache}. They are then
+ *       loaded from {@code /ua-lib/<sha256>.js}, so an engine bundled by several creatives is
+ *       stored and compiled once. Only recognised libraries and scripts other playables also
+ *       bundle are moved. Module scripts, inline scripts marked async or defer, and scripts that
+ *       locate themselves through {@code document.currentScript} or the script list stay where
+ *       they are, because moving them would change how they resolve or run.</li>
+ *   <li>Injects {@link AdPlayableController#HEAD_SCRIPT} (mute patcher, frame throttle, perf probe) into
+ *       {@code <head>}.</li>
+ * </ol>
+ * Artifacts live in {@code noBackupFilesDir/ua_playables/<hash of source path>/}. The directory's
+ * {@code build.json} holds the source's size and mtime and a stamp derived from the builder
+ * version and the injected scripts. Changing any of them invalidates every artifact. It also
+ * lists the shared libraries the artifact uses; libraries no manifest lists are pruned. The
+ * manifest is written last, so a half-built artifact is never used.
+ *
+ * Unity can call {@code PlayableBuilder.build(activity, path)} from a worker thread after caching
+ * a playable. Shows without a valid artifact fall back to patching on the fly and schedule a
+ * build for next time.
+ */
+public final class PlayableBuilder
+{
+    private static final String TAG = "UA/PlayableBuilder";
+    private static final int    BUILDER_VERSION = 4;
+    private static final String DIR_NAME   = "ua_playables";
+    private static final String MANIFEST   = "build.json";
+    private static final String DOCUMENT   = "document.html";
+    static final String ASSETS_DIR = "__ua_assets";
+    private static final int EXTRACT_MIN_CHARS = 43_692; // base64 length of 32 KB
+    private static final int CHARSET_SNIFF_BYTES = 1024;
+
+    /** Changes whenever the builder or the injected script changes. */
+    static final String STAMP = sha256Hex((BUILDER_VERSION + ":" + AdPlayableController.HEAD_SCRIPT)
+            .getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+
+    private static final Pattern INLINE_BLOB = Pattern.compile(
+            "((?:src|href)\\s*=\\s*[\"']?|url\\(\\s*[\"']?)data:([a-z0-9.+-]+/[a-z0-9.+-]+);base64,([A-Za-z0-9+/=]{"
+                    + EXTRACT_MIN_CHARS + ",})",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCRIPT = Pattern.compile("<script\\b([^>]*)>([\\s\\S]*?)</script\\s*>",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SRC_ATTR = Pattern.compile("(?<![\\w-])src\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern TYPE_ATTR = Pattern.compile("(?<![\\w-])type\\s*=\\s*[\"']?([^\"'\\s>]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern DEFERRED = Pattern.compile("\\b(?:async|defer)\\b", Pattern.CASE_INSENSITIVE);
+    /** Scripts that derive a base URL from their own src (Emscripten's scriptDirectory, engine loaders). */
+    private static final Pattern SELF_LOCATING = Pattern.compile(
+            "document\\.currentScript|document\\.scripts\\b|getElementsByTagName\\(\\s*[\"']script[\"']");
+    private static final Pattern CLASSIC_TYPE = Pattern.compile("(?:text|application)/(?:x-)?(?:javascript|ecmascript)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([A-Za-z0-9_.:-]+)");
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(() ->
+        {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "UA-PlayableBuilder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** A built playable: the patched document and where its extracted assets and libraries live. */
+    static final class Artifact
+    {
+        final File document;
+        final File assetsDir;
+        final File libraryDir; // shared PlayableLibraryCache directory
+
+        Artifact(File document, File assetsDir, File libraryDir)
+        {
+            this.document   = document;
+            this.assetsDir  = assetsDir;
+            this.libraryDir = libraryDir;
+        }
+    }
+
+    private PlayableBuilder() { }
+
+    /**
+     * Unity entry point. Builds (or reuses) the artifact for {@code htmlPath}. Blocking.
+     *
+     * @return true if a valid artifact exists afterwards
+     */
+    public static boolean build(Context context, String htmlPath)
+    {
+        try
+        {
+            return buildBlocking(context.getApplicationContext(), new File(htmlPath)) != null;
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Build failed for " + htmlPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Schedules {@link #build} on the builder thread. */
+    public static void buildAsync(Context context, String htmlPath)
+    {
+        Context app = context.getApplicationContext();
+        EXECUTOR.execute(() -> build(app, htmlPath));
+    }
+
+    /** The artifact for {@code source} if it is current; only reads the small manifest. */
+    static Artifact find(Context context, File source)
+    {
+        File dir = artifactDir(context, source);
+        File manifest = new File(dir, MANIFEST);
+        if (!manifest.isFile()) return null;
+        try
+        {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8));
+            if (!STAMP.equals(json.optString("stamp"))
+                    || !source.getAbsolutePath().equals(json.optString("source"))
+                    || json.optLong("size") != source.length()
+                    || json.optLong("mtime") != source.lastModified()) return null;
+            File document = new File(dir, DOCUMENT);
+            return document.isFile()
+                    ? new Artifact(document, new File(dir, ASSETS_DIR), PlayableLibraryCache.dir(context)) : null;
+        }
+        catch (IOException | JSONException e)
+        {
+            return null;
+        }
+    }
+
+    /** Synchronized: a build must not prune libraries another build has stored but not yet listed. */
+    static synchronized Artifact buildBlocking(Context context, File source) throws IOException
+    {
+        Artifact existing = find(context, source);
+        if (existing != null) return existing;
+        if (!source.isFile()) throw new IOException("Missing " + source);
+
+        long start = System.nanoTime();
+        prune(context);
+        File dir = artifactDir(context, source);
+        deleteRecursively(dir); // stale stamp or changed source
+        File assets = new File(dir, ASSETS_DIR);
+        if (!assets.mkdirs()) throw new IOException("Could not create " + assets);
+
+        byte[] raw = Files.readAllBytes(source.toPath());
+        String html = decode(raw);
+        int extracted = 0;
+        List<int[]> scripts = scriptBodies(html);
+        int script = 0;
+        Matcher m = INLINE_BLOB.matcher(html);
+        StringBuffer out = new StringBuffer(html.length());
+        while (m.find())
+        {
+            while (script < scripts.size() && scripts.get(script)[1] <= m.start()) script++;
+            if (script < scripts.size() && scripts.get(script)[0] <= m.start()) continue; // a script string
+
+            byte[] blob;
+            try
+            {
+                blob = Base64.decode(m.group(3), Base64.DEFAULT);
+            }
+            catch (IllegalArgumentException e)
+            {
+                continue; // not valid base64 — leave it inline
+            }
+            String ext = MimeTypeMap.getSingleton().getExtensionFromMimeType(m.group(2).toLowerCase(Locale.ROOT));
+            String name = sha256Hex(blob).substring(0, 16) + "." + (ext != null ? ext : "bin");
+            File file = new File(assets, name);
+            if (!file.exists()) Files.write(file.toPath(), blob);
+            m.appendReplacement(out, Matcher.quoteReplacement(m.group(1) + ASSETS_DIR + "/" + name));
+            extracted++;
+        }
+        m.appendTail(out);
+
+        List<String> libs = new ArrayList<>();
+        String linked = externalizeScripts(context, out.toString(), source.getParentFile(), dir.getName(), libs);
+
+        byte[] utf8 = linked.getBytes(StandardCharsets.UTF_8);
+        int at = PlayableHtmlInjector.insertionPoint(utf8, Math.min(utf8.length, PlayableHtmlInjector.HEAD_WINDOW));
+        byte[] tag = ("<script>" + AdPlayableController.HEAD_SCRIPT + "</script>").getBytes(StandardCharsets.UTF_8);
+        File document = new File(dir, DOCUMENT);
+        try (FileOutputStream fos = new FileOutputStream(document))
+        {
+            fos.write(utf8, 0, at);
+            fos.write(tag);
+            fos.write(utf8, at, utf8.length - at);
+            fos.getFD().sync();
+        }
+
+        writeManifest(dir, source, libs);
+        Log.d(TAG, "Built " + source.getName() + " (" + raw.length + " → " + document.length() + " bytes, "
+                + extracted + " blobs extracted, " + libs.size() + " shared scripts) in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+        return new Artifact(document, assets, PlayableLibraryCache.dir(context));
+    }
+
+    /** [start, end) of each script element's body, in document order. */
+    private static List<int[]> scriptBodies(String html)
+    {
+        List<int[]> bodies = new ArrayList<>();
+        Matcher m = SCRIPT.matcher(html);
+        while (m.find()) bodies.add(new int[] { m.start(2), m.end(2) });
+        return bodies;
+    }
+
+    /**
+     * Replaces large shared classic scripts with {@code <script src="/ua-lib/…">} references into
+     * {@link PlayableLibraryCache}; names used are added to {@code libs}.
+     *
+     * @param creativeId stable id of this playable, for {@link PlayableLibraryCache#isShared}
+     */
+    private static String externalizeScripts(Context context, String html, File baseDir, String creativeId,
+            List<String> libs) throws IOException
+    {
+        Matcher m = SCRIPT.matcher(html);
+        StringBuffer out = new StringBuffer(html.length());
+        while (m.find())
+        {
+            String attrs = m.group(1);
+            Matcher type = TYPE_ATTR.matcher(attrs);
+            if (type.find() && !CLASSIC_TYPE.matcher(type.group(1)).matches()) continue; // module, JSON, templates…
+
+            Matcher src = SRC_ATTR.matcher(attrs);
+            byte[] script;
+            String text;
+            if (src.find())
+            {
+                String value = src.group(1) != null ? src.group(1) : src.group(2) != null ? src.group(2) : src.group(3);
+                File file = localScript(baseDir, value);
+                if (file == null || file.length() < PlayableLibraryCache.MIN_BYTES) continue;
+                script = Files.readAllBytes(file.toPath());
+                text = new String(script, StandardCharsets.UTF_8);
+                attrs = attrs.substring(0, src.start()) + attrs.substring(src.end());
+            }
+            else
+            {
+                // async/defer are ignored on inline scripts but would apply once external.
+                if (m.group(2).length() < PlayableLibraryCache.MIN_BYTES || DEFERRED.matcher(attrs).find()) continue;
+                text = m.group(2);
+                script = text.getBytes(StandardCharsets.UTF_8);
+            }
+            if (SELF_LOCATING.matcher(text).find()) continue; // its siblings would be looked up under /ua-lib/
+            String digest = sha256Hex(script);
+            if (!PlayableLibraryCache.isShared(context, digest, text, creativeId)) continue;
+            String name = PlayableLibraryCache.store(context, digest, script);
+            if (!libs.contains(name)) libs.add(name);
+            m.appendReplacement(out, Matcher.quoteReplacement("<script" + attrs + " src=\""
+                    + PlayableLibraryCache.URL_PREFIX + name + "\"></script>"));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    /** The file a relative script {@code src} names inside the playable directory, else null. */
+    private static File localScript(File baseDir, String src) throws IOException
+    {
+        if (src.isEmpty() || src.startsWith("/") || src.contains(":")) return null; // absolute, data:, remote
+        int cut = src.length();
+        for (char c : new char[] { '?', '#' })
+        {
+            int i = src.indexOf(c);
+            if (i >= 0) cut = Math.min(cut, i);
+        }
+        File base = baseDir.getCanonicalFile();
+        File file = new File(base, Uri.decode(src.substring(0, cut))).getCanonicalFile();
+        return file.getPath().startsWith(base.getPath() + File.separator) && file.isFile() ? file : null;
+    }
+
+    // --- Helpers ---
+
+    /** Decodes with the BOM or declared charset, defaulting to UTF-8; the BOM is dropped. */
+    static String decode(byte[] raw)
+    {
+        if (raw.length >= 3 && (raw[0] & 0xff) == 0xEF && (raw[1] & 0xff) == 0xBB && (raw[2] & 0xff) == 0xBF)
+            return new String(raw, 3, raw.length - 3, StandardCharsets.UTF_8);
+        if (raw.length >= 2 && (raw[0] & 0xff) == 0xFE && (raw[1] & 0xff) == 0xFF)
+            return new String(raw, 2, raw.length - 2, StandardCharsets.UTF_16BE);
+        if (raw.length >= 2 && (raw[0] & 0xff) == 0xFF && (raw[1] & 0xff) == 0xFE)
+            return new String(raw, 2, raw.length - 2, StandardCharsets.UTF_16LE);
+
+        Charset charset = StandardCharsets.UTF_8;
+        String head = new String(raw, 0, Math.min(raw.length, CHARSET_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher m = CHARSET.matcher(head);
+        if (m.find())
+        {
+            try
+            {
+                charset = Charset.forName(m.group(1));
+            }
+            catch (IllegalArgumentException e)
+            {
+                Log.w(TAG, "Unknown charset " + m.group(1) + " — assuming UTF-8");
+            }
+        }
+        return new String(raw, charset);
+    }
+
+    private static void writeManifest(File dir, File source, List<String> libs) throws IOException
+    {
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        try
+        {
+            JSONObject json = new JSONObject();
+            json.put("stamp", STAMP);
+            json.put("source", source.getAbsolutePath());
+            json.put("size", source.length());
+            json.put("mtime", source.lastModified());
+            json.put("libs", new JSONArray(libs));
+            Files.write(tmp.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (JSONException e)
+        {
+            throw new IOException(e);
+        }
+        if (!tmp.renameTo(new File(dir, MANIFEST))) throw new IOException("Could not commit manifest");
+    }
+
+    /** Drops artifacts whose source playable has been deleted, then libraries nothing lists. */
+    private static void prune(Context context)
+    {
+        File[] dirs = new File(context.getNoBackupFilesDir(), DIR_NAME).listFiles();
+        Set<String> referenced = new HashSet<>();
+        if (dirs != null) for (File dir : dirs)
+        {
+            try
+            {
+                JSONObject json = new JSONObject(new String(Files.readAllBytes(new File(dir, MANIFEST).toPath()), StandardCharsets.UTF_8));
+                if (new File(json.optString("source")).isFile())
+                {
+                    JSONArray libs = json.optJSONArray("libs");
+                    if (libs != null) for (int i = 0; i < libs.length(); i++) referenced.add(libs.optString(i));
+                    continue;
+                }
+            }
+            catch (IOException | JSONException e)
+            {
+                // No readable manifest — an interrupted build; fall through and delete it.
+            }
+            deleteRecursively(dir);
+        }
+        PlayableLibraryCache.prune(context, referenced);
+    }
+
+    private static File artifactDir(Context context, File source)
+    {
+        File root = new File(context.getNoBackupFilesDir(), DIR_NAME);
+        return new File(root, sha256Hex(source.getAbsolutePath().getBytes(StandardCharsets.UTF_8)).substring(0, 24));
+    }
+
+    private static void deleteRecursively(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteRecursively(child);
+        file.delete();
+    }
+
+    static String sha256Hex(byte[] data)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e); // SHA-256 is mandatory on Android
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ua.toolkit.display;
+
+import android.webkit.WebView;
+
+/**
+ * Native → JS state channel for a playable WebView.
+ *
+ * Mute, pause and frame cap are kept here as desired state. Changes made in the same frame
+ * collapse into one {@code window.__adApply(m,p,f)} call, sent on the next animation frame
+ * ({@link #APPLY_JS}). Each argument is an int, with -1 meaning "unchanged". Values the current
+ * document already has are sent as -1, and a call where nothing changed is dropped. So an audio
+ * focus loss, onPause and a popup expand in quick succession cost one renderer round trip, not
+ * four freshly compiled scripts.
+ *
+ * {@link #flush()} sends immediately, for callers that need ordering (pause must reach the
+ * page before {@code pauseTimers()}). {@link #onDocumentReady()} forgets what was sent, so a
+ * freshly loaded document receives the full state. With no WebView (between a renderer loss
+ * and its replacement, or after destroy) changes are only recorded. Main thread only.
+ */
+final class PlayableCommandChannel
+{
+    /**
+     * Installed with the other head scripts, and again from onPageFinished (a no-op if already
+     * present). Forwards to {@code __adMute}, {@code __adPause} and {@code __adThrottle}. Before the
+     * mute patcher exists, it falls back to muting media elements directly.
+     */
+    static final String APPLY_JS =
+        "(function(){" +
+        "if(window.__adApply)return;" +
+        "window.__adApply=function(m,p,f){" +
+        "if(m>=0){if(typeof window.__adMute==='function')window.__adMute(m===1);" +
+        "else document.querySelectorAll('audio,video').forEach(function(el){el.muted=m===1;});}" +
+        "if(p>=0&&typeof window.__adPause==='function')window.__adPause(p===1);" +
+        "if(f>=0&&typeof window.__adThrottle==='function')window.__adThrottle(f);" +
+        "};" +
+        "})()";
+
+    private static final int UNSET = -1;
+
+    private WebView webView;
+    private final Runnable flushRunnable = this::flush;
+
+    // Desired state, and what the current document was last sent.
+    private int muted  = UNSET, sentMuted  = UNSET;
+    private int paused = UNSET, sentPaused = UNSET;
+    private int fps    = UNSET, sentFps    = UNSET;
+    private boolean scheduled = false;
+
+    PlayableCommandChannel(WebView webView)
+    {
+        this.webView = webView;
+    }
+
+    void setMuted(boolean value)
+    {
+        muted = value ? 1 : 0;
+        schedule();
+    }
+
+    void setPaused(boolean value)
+    {
+        paused = value ? 1 : 0;
+        schedule();
+    }
+
+    /** Frame cap in fps; 0 = uncapped. */
+    void setFrameCap(int value)
+    {
+        fps = Math.max(0, value);
+        schedule();
+    }
+
+    /** Sends whatever differs from the document's state now, instead of on the next frame. */
+    void flush()
+    {
+        if (webView == null) return;
+        if (scheduled)
+        {
+            webView.removeCallbacks(flushRunnable);
+            scheduled = false;
+        }
+        int m = muted  != sentMuted  ? muted  : UNSET;
+        int p = paused != sentPaused ? paused : UNSET;
+        int f = fps    != sentFps    ? fps    : UNSET;
+        if (m == UNSET && p == UNSET && f == UNSET) return;
+        sentMuted = muted;
+        sentPaused = paused;
+        sentFps = fps;
+        webView.evaluateJavascript("window.__adApply&&__adApply(" + m + "," + p + "," + f + ")", null);
+    }
+
+    /** A new document has loaded and has none of the state yet — resend all of it. */
+    void onDocumentReady()
+    {
+        sentMuted = sentPaused = sentFps = UNSET;
+        flush();
+    }
+
+    /**
+     * Follows the controller to a replacement WebView (null while there is none); its document
+     * gets the state on ready.
+     */
+    void moveTo(WebView replacement)
+    {
+        cancel();
+        webView = replacement;
+        sentMuted = sentPaused = sentFps = UNSET;
+    }
+
+    void cancel()
+    {
+        if (webView != null) webView.removeCallbacks(flushRunnable);
+        scheduled = false;
+    }
+
+    private void schedule()
+    {
+        if (scheduled || webView == null) return;
+        if (!webView.isAttachedToWindow())
+        {
+            // Preloading off-screen: no frames to wait for, and a queued runnable would sit
+            // until attach.
+            flush();
+            return;
+        }
+        scheduled = true;
+        webView.postOnAnimation(flushRunnable);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ua.toolkit.display;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Streams an HTML file with a {@code <script>} inserted as the first child of {@code <head>}.
+ *
+ * Only a bounded prefix of the file is read up front to find the insertion point. The tag is
+ * matched case-insensitively on raw bytes — it's ASCII, so this is safe for UTF-8. The result is
+ * that prefix split around the script, followed by the rest of the still-open file. Nothing is
+ * decoded into a String, and a multi-megabyte playable with inlined assets costs one window of
+ * heap instead of several full copies. The stream is read by the WebView's network thread, not
+ * the main thread.
+ */
+final class PlayableHtmlInjector
+{
+    /** {@code <head>} is expected near the top; documents without one in this window get the script first. */
+    static final int HEAD_WINDOW = 64 * 1024;
+
+    private static final byte[] HEAD = "<head".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BOM  = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private PlayableHtmlInjector() { }
+
+    /** Opens {@code html} with {@code <script>script</script>} injected; the caller closes the stream. */
+    static InputStream open(File html, String script) throws IOException
+    {
+        FileInputStream file = new FileInputStream(html);
+        try
+        {
+            byte[] prefix = new byte[HEAD_WINDOW];
+            int length = 0, n;
+            while (length < prefix.length && (n = file.read(prefix, length, prefix.length - length)) > 0) length += n;
+
+            int at = insertionPoint(prefix, length);
+            byte[] tag = ("<script>" + script + "</script>").getBytes(StandardCharsets.UTF_8);
+            return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(prefix, 0, at),
+                    new ByteArrayInputStream(tag),
+                    new ByteArrayInputStream(prefix, at, length - at),
+                    file)));
+        }
+        catch (IOException | RuntimeException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Offset just past the {@code <head ...>} open tag. If none is found, the offset after a
+     * UTF-8 BOM, or 0. Injecting inside {@code <head>} keeps the script after
+     * {@code <!DOCTYPE>}, which would otherwise put the WebView into quirks mode.
+     */
+    static int insertionPoint(byte[] buf, int length)
+    {
+        for (int i = 0; i + HEAD.length < length; i++)
+        {
+            if (!matchesIgnoreCase(buf, i, HEAD)) continue;
+            byte next = buf[i + HEAD.length];
+            if (next != '>' && next != ' ' && next != '\t' && next != '\n' && next != '\r') continue; // <header>
+            for (int j = i + HEAD.length; j < length; j++)
+            {
+                if (buf[j] == '>') return j + 1;
+            }
+            break;
+        }
+        boolean bom = length >= BOM.length && buf[0] == BOM[0] && buf[1] == BOM[1] && buf[2] == BOM[2];
+        return bom ? BOM.length : 0;
+    }
+
+    private static boolean matchesIgnoreCase(byte[] buf, int offset, byte[] lowerAscii)
+    {
+        for (int k = 0; k < lowerAscii.length; k++)
+        {
+            int b = buf[offset + k];
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != lowerAscii[k]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ua.toolkit.display;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for the large scripts playables share (Pixi, Phaser, Cocos, Howler…).
+ *
+ * {@link PlayableBuilder} moves scripts of at least {@link #MIN_BYTES} here, inline or external,
+ * as {@code <sha256>.js}, and points the document at
+ * {@code https://appassets.androidplatform.net/ua-lib/<sha256>.js}. Only shared code qualifies
+ * ({@link #isShared}): a recognised library banner, or the same bytes built from a second
+ * playable. A creative's own game code stays with the creative, where its URL still resolves
+ * sibling files. Two creatives bundling the
+ * same engine build the same file, so it is stored once. Every creative also loads it from the
+ * same URL, so the renderer's compiled-script caches, which are keyed by URL and source, carry
+ * over from one playable to the next.
+ *
+ * Files are immutable once written. Ones no artifact references any more are pruned by
+ * the builder. Which playable first built each large script is remembered in
+ * {@code ua_playable_libs_seen/<sha256>} for {@link #SEEN_TTL_MS}.
+ */
+final class PlayableLibraryCache
+{
+    private static final String TAG = "UA/PlayableLibs";
+    private static final String DIR_NAME = "ua_playable_libs";
+    private static final String SEEN_DIR_NAME = "ua_playable_libs_seen";
+    private static final long SEEN_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final int BANNER_CHARS = 2048;
+    static final String URL_PREFIX = "/ua-lib/";
+    static final int MIN_BYTES = 64 * 1024;
+
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{64}\\.js");
+    /**
+     * License / version banners of engines and libraries playables commonly bundle, exactly as
+     * their minified builds keep them. A bare library name is not enough: game code mentions
+     * "gsap" or "lodash" all the time.
+     */
+    private static final Pattern KNOWN_LIBRARY = Pattern.compile(
+            "pixi\\.js - v\\d+\\.\\d"                                           // /*! pixi.js - v7.2.4
+                    + "|Phaser v\\d+\\.\\d"                                     // Phaser v3.60.0
+                    + "|howler\\.js v\\d+\\.\\d"                                // /*! howler.js v2.2.3
+                    + "|Copyright 20\\d\\d-20\\d\\d Three\\.js Authors"         // three.js, three.module.js
+                    + "|Cocos2d-(?:JS|html5) v\\d+\\.\\d"                       // Cocos2d-JS v3.17
+                    + "|@license (?:Create|Easel|Sound|Tween|Preload)JS"        // /*! @license CreateJS
+                    + "|GSAP \\d+\\.\\d+\\.\\d"                                 // /*! GSAP 3.12.2
+                    + "|@license Copyright \\(c\\) 20\\d\\d-20\\d\\d, GreenSock" // TweenMax 2.x
+                    + "|PlayCanvas Engine v\\d+\\.\\d"                          // PlayCanvas Engine v1.65.3
+                    + "|matter-js \\d+\\.\\d+\\.\\d by @liabru"                 // matter-js 0.19.0 by @liabru
+                    + "|jQuery v\\d+\\.\\d"                                     // /*! jQuery v3.6.0
+                    + "|Lodash lodash\\.com/license|lodash v4\\.\\d");          // lodash.min.js, /*! lodash v4.17
+
+    private PlayableLibraryCache() { }
+
+    static File dir(Context context)
+    {
+        return new File(context.getNoBackupFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * Whether {@code script} is shared code rather than {@code creativeId}'s own: its banner names
+     * a known library, another creative already put it in the store, or a different creative
+     * built the same bytes before. The first sighting is recorded for the last case.
+     *
+     * @param digest     {@code sha256Hex(script)}
+     * @param creativeId stable id of the playable being built
+     */
+    static boolean isShared(Context context, String digest, String script, String creativeId) throws IOException
+    {
+        if (KNOWN_LIBRARY.matcher(script.substring(0, Math.min(script.length(), BANNER_CHARS))).find()) return true;
+        if (new File(dir(context), digest + ".js").isFile()) return true;
+
+        File marker = new File(seenDir(context), digest);
+        if (marker.isFile())
+        {
+            String first = new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8);
+            marker.setLastModified(System.currentTimeMillis());
+            return !first.equals(creativeId);
+        }
+        File seen = marker.getParentFile();
+        if (!seen.isDirectory() && !seen.mkdirs()) throw new IOException("Could not create " + seen);
+        Files.write(marker.toPath(), creativeId.getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    /**
+     * Stores {@code script} (UTF-8) under its digest unless it is already there.
+     *
+     * @param digest {@code sha256Hex(script)}
+     * @return the file name, e.g. {@code "9f2c….js"}
+     */
+    static String store(Context context, String digest, byte[] script) throws IOException
+    {
+        String name = digest + ".js";
+        File dir = dir(context);
+        File file = new File(dir, name);
+        if (file.isFile() && file.length() == script.length) return name;
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        // Write-then-rename: a shared file is never seen half-written by a concurrent show.
+        File tmp = new File(dir, name + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp))
+        {
+            fos.write(script);
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Could not commit " + name);
+        return name;
+    }
+
+    /** The library file for a {@code /ua-lib/} request name, or null if malformed or missing. */
+    static File resolve(File dir, String name)
+    {
+        if (!NAME.matcher(name).matches()) return null;
+        File file = new File(dir, name);
+        return file.isFile() ? file : null;
+    }
+
+    /** Deletes libraries (and leftover temp files) not in {@code referenced}, and stale sightings. */
+    static void prune(Context context, Set<String> referenced)
+    {
+        File[] files = dir(context).listFiles();
+        int removed = 0;
+        if (files != null) for (File file : files)
+        {
+            if (referenced.contains(file.getName())) continue;
+            if (file.delete()) removed++;
+        }
+        if (removed > 0) Log.d(TAG, "Pruned " + removed + " unreferenced libraries");
+
+        File[] markers = seenDir(context).listFiles();
+        long cutoff = System.currentTimeMillis() - SEEN_TTL_MS;
+        if (markers != null) for (File marker : markers)
+        {
+            if (marker.lastModified() < cutoff) marker.delete();
+        }
+    }
+
+    private static File seenDir(Context context)
+    {
+        return new File(context.getNoBackupFilesDir(), SEEN_DIR_NAME);
+    }
+}
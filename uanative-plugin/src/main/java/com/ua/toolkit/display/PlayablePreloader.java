@@ -0,0 +1,93 @@
+package com.ua.toolkit.display;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Loads the next playable in an off-screen WebView before AdActivity launches.
+ *
+ * {@link #preload} builds an {@link AdPlayableController} on the application context and loads
+ * the document. Once {@code onPageFinished} fires, its scripts have run and its assets are in,
+ * and the page is paused (audio, the game loop, rendering) until shown. AdActivity then
+ * {@link #take}s it and reparents the WebView into its layout, so the ad opens on a ready page
+ * instead of waiting for the load under the 15 s watchdog.
+ *
+ * {@code requestAnimationFrame} doesn't run for a WebView that isn't attached to a window, so the
+ * game's first frame happens right after attach rather than during preload.
+ *
+ * One playable is held at a time, and an unused preload is released after
+ * {@link #EXPIRY_MS}. The parked page is held with {@code __adPause} and {@code onPause()} but
+ * not {@code WebView.pauseTimers()}, which is process-wide and would stall every other WebView
+ * meanwhile (store-link resolution, the game's own). Main thread only, except
+ * {@link #preload}, which Unity may call from any thread.
+ */
+public final class PlayablePreloader
+{
+    private static final String TAG = "UA/PlayablePreloader";
+    static final long EXPIRY_MS = 5 * 60_000;
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+    private static final Runnable EXPIRE = () ->
+    {
+        Log.d(TAG, "Preload unused for " + EXPIRY_MS / 1000 + "s — releasing");
+        cancel();
+    };
+    private static AdPlayableController preloaded;
+
+    private PlayablePreloader() { }
+
+    /** Unity entry point: starts loading {@code htmlPath} off-screen, replacing any other preload. */
+    public static void preload(Context context, String htmlPath)
+    {
+        Context app = context.getApplicationContext();
+        MAIN.post(() ->
+        {
+            if (preloaded != null && htmlPath.equals(preloaded.getLoadedPath()) && !preloaded.hasLoadFailed())
+                return;
+            cancel();
+            try
+            {
+                AdPlayableController controller = new AdPlayableController(app);
+                controller.load(htmlPath);
+                preloaded = controller;
+                MAIN.postDelayed(EXPIRE, EXPIRY_MS);
+                Log.d(TAG, "Preloading " + htmlPath);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                Log.w(TAG, "Preload failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Hands over the preloaded controller for {@code htmlPath}, or null if there is none (or it
+     * failed). The caller owns it from here and must {@code attach} it.
+     */
+    public static AdPlayableController take(String htmlPath)
+    {
+        AdPlayableController controller = preloaded;
+        if (controller == null) return null;
+        preloaded = null;
+        MAIN.removeCallbacks(EXPIRE);
+        if (!htmlPath.equals(controller.getLoadedPath()) || controller.hasLoadFailed())
+        {
+            controller.destroy();
+            return null;
+        }
+        return controller;
+    }
+
+    /** Releases the preloaded WebView, if any. */
+    public static void cancel()
+    {
+        MAIN.removeCallbacks(EXPIRE);
+        if (preloaded == null) return;
+        preloaded.destroy();
+        preloaded = null;
+    }
+}
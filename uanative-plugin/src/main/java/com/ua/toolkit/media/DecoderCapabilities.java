@@ -0,0 +1,526 @@
+package com.ua.toolkit.media;
+
+import android.content.Context;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.ua.toolkit.cache.CreativePack;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Device decoder profile: for every mime type, the best hardware and software decoder, the
+ * largest size each can handle and the highest level it reaches in each codec profile.
+ *
+ * Scanning MediaCodecList costs tens to hundreds of ms, so it runs once on a background thread
+ * ({@link #warmUp(Context)}) and the result is persisted in filesDir keyed by
+ * {@link Build#FINGERPRINT} — the scan is only repeated after an OS update. Once loaded every
+ * query is a HashMap lookup. Profiles matter as much as sizes: HEVC Main10, VP9 Profile 2 or
+ * AVC High@5.2 are rejected by many decoders that take Main / Profile 0 / High@4.1 at the same size.
+ *
+ * Used by AdActivity to fail undecodable creatives before an impression is spent, by the codec
+ * engine to pick its hardware decoder, and exposed to Unity through {@link #isVideoSupported}.
+ */
+public final class DecoderCapabilities
+{
+    private static final String TAG = "UA/DecoderCaps";
+    private static final String FILE_NAME = "ua_decoder_caps.json";
+    private static final int SCHEMA_VERSION = 2; // 2: per-profile max levels
+
+    /** Common ad sizes, largest first, probed to find the biggest frame area a decoder accepts. */
+    private static final int[][] PROBE_SIZES = {
+            { 3840, 2160 }, { 2560, 1440 }, { 1920, 1080 }, { 1280, 720 },
+            { 960, 540 }, { 854, 480 }, { 640, 360 }, { 352, 288 }
+    };
+
+    /** Best decoder for one mime type. Audio entries carry no size limits. */
+    public static final class Entry
+    {
+        public final String  decoderName;
+        public final boolean hardware;
+        public final int     maxWidth;
+        public final int     maxHeight;
+        public final long    maxPixels; // 0 = unknown, only the width / height bounds apply
+        /** CodecProfileLevel profile → highest level constant; empty = the decoder reports none. */
+        public final Map<Integer, Integer> maxLevels;
+
+        Entry(String decoderName, boolean hardware, int maxWidth, int maxHeight, long maxPixels,
+              Map<Integer, Integer> maxLevels)
+        {
+            this.decoderName = decoderName;
+            this.hardware    = hardware;
+            this.maxWidth    = maxWidth;
+            this.maxHeight   = maxHeight;
+            this.maxPixels   = maxPixels;
+            this.maxLevels   = Collections.unmodifiableMap(maxLevels);
+        }
+
+        /**
+         * Size check plus profile / level. {@code profile <= 0} skips the profile check and
+         * {@code level <= 0} the level check. Level constants grow with the level within a
+         * codec, so they compare numerically.
+         */
+        public boolean supports(int width, int height, int profile, int level)
+        {
+            if (!supports(width, height)) return false;
+            if (profile <= 0 || maxLevels.isEmpty()) return true;
+            Integer max = maxLevels.get(profile);
+            return max != null && (level <= 0 || level <= max);
+        }
+
+        /** Either orientation — decoders are usually asymmetric (e.g. 4096x2176). */
+        public boolean supports(int width, int height)
+        {
+            if (maxWidth <= 0 || width <= 0 || height <= 0) return true;
+            boolean fits = (width <= maxWidth && height <= maxHeight)
+                        || (height <= maxWidth && width <= maxHeight);
+            return fits && (maxPixels <= 0 || (long) width * height <= maxPixels);
+        }
+    }
+
+    /** Result of {@link #preflightAsync}, delivered on the main thread. */
+    public interface PreflightCallback
+    {
+        /** @param unsupported null if decodable (or unknown), otherwise the failure reason */
+        void onPreflight(String unsupported);
+    }
+
+    private static volatile DecoderCapabilities instance;
+    private static final AtomicBoolean loading = new AtomicBoolean(false);
+
+    private static final ExecutorService preflightWorker = Executors.newSingleThreadExecutor(r ->
+    {
+        Thread t = new Thread(r, "UA-Preflight");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Handler main = new Handler(Looper.getMainLooper());
+
+    private final String fingerprint;
+    private final Map<String, Entry> hardware;
+    private final Map<String, Entry> software;
+
+    private DecoderCapabilities(String fingerprint, Map<String, Entry> hardware, Map<String, Entry> software)
+    {
+        this.fingerprint = fingerprint;
+        this.hardware = Collections.unmodifiableMap(hardware);
+        this.software = Collections.unmodifiableMap(software);
+    }
+
+    // --- Loading ---
+
+    /**
+     * Loads the persisted profile, or scans the codec list on a miss, on a background thread.
+     * Safe to call repeatedly — returns immediately once loaded or while a load is in flight.
+     * Call from Unity at SDK init so the first ad never pays for the scan.
+     */
+    public static void warmUp(Context context)
+    {
+        if (instance != null || !loading.compareAndSet(false, true)) return;
+        Context app = context.getApplicationContext();
+        Thread t = new Thread(() ->
+        {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try { getBlocking(app); }
+            finally { loading.set(false); }
+        }, "UA-DecoderCaps");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** The loaded profile, or null while it is still being computed. Never blocks. */
+    public static DecoderCapabilities get()
+    {
+        return instance;
+    }
+
+    /** Loads or scans on the calling thread. For background callers only. */
+    public static synchronized DecoderCapabilities getBlocking(Context context)
+    {
+        if (instance != null) return instance;
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        long start = System.currentTimeMillis();
+
+        DecoderCapabilities caps = read(file);
+        if (caps != null)
+        {
+            Log.d(TAG, "Loaded cached profile in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        else
+        {
+            caps = scan();
+            Log.d(TAG, "Scanned " + caps.hardware.size() + " hw / " + caps.software.size()
+                    + " sw types in " + (System.currentTimeMillis() - start) + "ms");
+            caps.write(file);
+        }
+        instance = caps;
+        return caps;
+    }
+
+    // --- Queries (O(1)) ---
+
+    /** True if any decoder on the device handles {@code mime} at the given size. */
+    public boolean canDecode(String mime, int width, int height)
+    {
+        return canDecode(mime, width, height, 0, 0);
+    }
+
+    /** As {@link #canDecode(String, int, int)}, also requiring the CodecProfileLevel profile at that level. */
+    public boolean canDecode(String mime, int width, int height, int profile, int level)
+    {
+        return canDecodeInHardware(mime, width, height, profile, level)
+                || supports(software, mime, width, height, profile, level);
+    }
+
+    public boolean canDecodeInHardware(String mime, int width, int height)
+    {
+        return canDecodeInHardware(mime, width, height, 0, 0);
+    }
+
+    public boolean canDecodeInHardware(String mime, int width, int height, int profile, int level)
+    {
+        return supports(hardware, mime, width, height, profile, level);
+    }
+
+    /** Hardware decoder for {@code mime}, or null if only software (or nothing) handles it. */
+    public Entry getHardwareDecoder(String mime)
+    {
+        return mime != null ? hardware.get(mime.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /** Largest size any decoder for {@code mime} handles, preferring hardware. Null if unsupported. */
+    public Entry getBestDecoder(String mime)
+    {
+        Entry hw = getHardwareDecoder(mime);
+        return hw != null ? hw : (mime != null ? software.get(mime.toLowerCase(Locale.ROOT)) : null);
+    }
+
+    private static boolean supports(Map<String, Entry> map, String mime, int width, int height, int profile, int level)
+    {
+        if (mime == null) return false;
+        Entry entry = map.get(mime.toLowerCase(Locale.ROOT));
+        return entry != null && entry.supports(width, height, profile, level);
+    }
+
+    // --- Preflight ---
+
+    /**
+     * Checks the creative's tracks against the profile.
+     *
+     * @return null if the file can be decoded (or the profile isn't loaded yet and we can't tell),
+     *         otherwise a human-readable reason suitable for onAdFailed
+     */
+    public static String preflight(String videoPath)
+    {
+        DecoderCapabilities caps = instance;
+        if (caps == null || videoPath == null) return null;
+
+        MediaExtractor extractor = new MediaExtractor();
+        try
+        {
+            CreativePack.setVideoDataSource(extractor, videoPath);
+            for (int i = 0; i < extractor.getTrackCount(); i++)
+            {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null) continue;
+                if (mime.startsWith("video/"))
+                {
+                    int w = format.getInteger(MediaFormat.KEY_WIDTH);
+                    int h = format.getInteger(MediaFormat.KEY_HEIGHT);
+                    int[] pl = profileLevel(format);
+                    if (!caps.canDecode(mime, w, h))
+                        return "Unsupported video: no decoder for " + mime + " at " + w + "x" + h;
+                    if (!caps.canDecode(mime, w, h, pl[0], pl[1]))
+                        return "Unsupported video: no decoder for " + mime + " profile " + pl[0] + " level " + pl[1];
+                }
+                else if (mime.startsWith("audio/") && !caps.canDecode(mime, 0, 0))
+                {
+                    return "Unsupported audio: no decoder for " + mime;
+                }
+            }
+            return null;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Unreadable container — let the player report it through its own error path.
+            Log.w(TAG, "preflight could not read " + videoPath + ": " + e.getMessage());
+            return null;
+        }
+        finally
+        {
+            extractor.release();
+        }
+    }
+
+    /**
+     * The track's CodecProfileLevel {profile, level}, 0 where unknown. Extractors fill
+     * KEY_PROFILE / KEY_LEVEL for most containers. For AVC without them, they are read from the
+     * SPS in {@code csd-0}.
+     */
+    public static int[] profileLevel(MediaFormat format)
+    {
+        int profile = format.containsKey(MediaFormat.KEY_PROFILE) ? format.getInteger(MediaFormat.KEY_PROFILE) : 0;
+        int level = format.containsKey(MediaFormat.KEY_LEVEL) ? format.getInteger(MediaFormat.KEY_LEVEL) : 0;
+        if ((profile <= 0 || level <= 0) && MediaFormat.MIMETYPE_VIDEO_AVC.equals(format.getString(MediaFormat.KEY_MIME)))
+        {
+            ByteBuffer csd = format.getByteBuffer("csd-0");
+            int[] sps = csd != null ? avcProfileLevel(csd.duplicate()) : null;
+            if (sps != null)
+            {
+                if (profile <= 0) profile = sps[0];
+                if (level <= 0) level = sps[1];
+            }
+        }
+        return new int[] { Math.max(0, profile), Math.max(0, level) };
+    }
+
+    /** profile_idc / level_idc from an Annex-B or bare AVC SPS, mapped to CodecProfileLevel. */
+    private static int[] avcProfileLevel(ByteBuffer csd)
+    {
+        byte[] b = new byte[Math.min(csd.remaining(), 64)];
+        csd.get(b);
+        int i = 0;
+        while (i + 3 < b.length && !(b[i] == 0 && b[i + 1] == 0 && b[i + 2] == 1)) i++;
+        int nal = i + 3 < b.length ? i + 3 : 0; // no start code: the buffer is the NAL itself
+        if (nal + 3 >= b.length || (b[nal] & 0x1f) != 7) return null;
+        int profile = AVC_PROFILES.getOrDefault(b[nal + 1] & 0xff, 0);
+        int level = AVC_LEVELS.getOrDefault(b[nal + 3] & 0xff, 0);
+        return new int[] { profile, level };
+    }
+
+    private static final Map<Integer, Integer> AVC_PROFILES = new HashMap<>();
+    private static final Map<Integer, Integer> AVC_LEVELS = new HashMap<>();
+    static
+    {
+        AVC_PROFILES.put(66,  MediaCodecInfo.CodecProfileLevel.AVCProfileBaseline);
+        AVC_PROFILES.put(77,  MediaCodecInfo.CodecProfileLevel.AVCProfileMain);
+        AVC_PROFILES.put(88,  MediaCodecInfo.CodecProfileLevel.AVCProfileExtended);
+        AVC_PROFILES.put(100, MediaCodecInfo.CodecProfileLevel.AVCProfileHigh);
+        AVC_PROFILES.put(110, MediaCodecInfo.CodecProfileLevel.AVCProfileHigh10);
+        AVC_PROFILES.put(122, MediaCodecInfo.CodecProfileLevel.AVCProfileHigh422);
+        AVC_PROFILES.put(244, MediaCodecInfo.CodecProfileLevel.AVCProfileHigh444);
+        int[][] levels = {
+                { 10, MediaCodecInfo.CodecProfileLevel.AVCLevel1 },  { 11, MediaCodecInfo.CodecProfileLevel.AVCLevel11 },
+                { 12, MediaCodecInfo.CodecProfileLevel.AVCLevel12 }, { 13, MediaCodecInfo.CodecProfileLevel.AVCLevel13 },
+                { 20, MediaCodecInfo.CodecProfileLevel.AVCLevel2 },  { 21, MediaCodecInfo.CodecProfileLevel.AVCLevel21 },
+                { 22, MediaCodecInfo.CodecProfileLevel.AVCLevel22 }, { 30, MediaCodecInfo.CodecProfileLevel.AVCLevel3 },
+                { 31, MediaCodecInfo.CodecProfileLevel.AVCLevel31 }, { 32, MediaCodecInfo.CodecProfileLevel.AVCLevel32 },
+                { 40, MediaCodecInfo.CodecProfileLevel.AVCLevel4 },  { 41, MediaCodecInfo.CodecProfileLevel.AVCLevel41 },
+                { 42, MediaCodecInfo.CodecProfileLevel.AVCLevel42 }, { 50, MediaCodecInfo.CodecProfileLevel.AVCLevel5 },
+                { 51, MediaCodecInfo.CodecProfileLevel.AVCLevel51 }, { 52, MediaCodecInfo.CodecProfileLevel.AVCLevel52 },
+        };
+        for (int[] l : levels) AVC_LEVELS.put(l[0], l[1]);
+    }
+
+    /**
+     * {@link #preflight} on a background thread — opening the container is file I/O that does
+     * not belong on ad launch. Answers synchronously when the profile isn't loaded, since
+     * there is nothing to check against.
+     */
+    public static void preflightAsync(String videoPath, PreflightCallback callback)
+    {
+        if (instance == null || videoPath == null)
+        {
+            callback.onPreflight(null);
+            return;
+        }
+        preflightWorker.execute(() ->
+        {
+            String unsupported = preflight(videoPath);
+            main.post(() -> callback.onPreflight(unsupported));
+        });
+    }
+
+    /**
+     * Unity entry point: true if the creative at {@code videoPath} can be decoded on this device.
+     * Blocks for the scan on first use — call from a background thread, or after {@link #warmUp}.
+     */
+    public static boolean isVideoSupported(Context context, String videoPath)
+    {
+        getBlocking(context);
+        String reason = preflight(videoPath);
+        if (reason != null) Log.w(TAG, reason);
+        return reason == null;
+    }
+
+    /** Hardware flag that also works below API 29, where only the codec name tells us. */
+    public static boolean isHardware(MediaCodecInfo info)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            return info.isHardwareAccelerated() && !info.isSoftwareOnly();
+        String name = info.getName().toLowerCase(Locale.ROOT);
+        return !name.startsWith("omx.google.") && !name.startsWith("c2.android.");
+    }
+
+    // --- Scan ---
+
+    private static DecoderCapabilities scan()
+    {
+        Map<String, Entry> hardware = new HashMap<>();
+        Map<String, Entry> software = new HashMap<>();
+        for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos())
+        {
+            if (info.isEncoder()) continue;
+            boolean hw = isHardware(info);
+            for (String type : info.getSupportedTypes())
+            {
+                MediaCodecInfo.CodecCapabilities caps;
+                try { caps = info.getCapabilitiesForType(type); }
+                catch (IllegalArgumentException e) { continue; }
+
+                Entry entry = describe(info.getName(), hw, caps);
+                Map<String, Entry> target = hw ? hardware : software;
+                String mime = type.toLowerCase(Locale.ROOT);
+                Entry previous = target.get(mime);
+                if (previous == null || area(entry) > area(previous)) target.put(mime, entry);
+            }
+        }
+        return new DecoderCapabilities(Build.FINGERPRINT, hardware, software);
+    }
+
+    private static Entry describe(String name, boolean hw, MediaCodecInfo.CodecCapabilities caps)
+    {
+        Map<Integer, Integer> maxLevels = new HashMap<>();
+        if (caps.profileLevels != null) for (MediaCodecInfo.CodecProfileLevel pl : caps.profileLevels)
+        {
+            Integer max = maxLevels.get(pl.profile);
+            if (max == null || pl.level > max) maxLevels.put(pl.profile, pl.level);
+        }
+        MediaCodecInfo.VideoCapabilities video = caps.getVideoCapabilities();
+        if (video == null) return new Entry(name, hw, 0, 0, 0, maxLevels);
+
+        long maxPixels = 0;
+        for (int[] size : PROBE_SIZES)
+        {
+            if (video.isSizeSupported(size[0], size[1]) || video.isSizeSupported(size[1], size[0]))
+            {
+                maxPixels = (long) size[0] * size[1];
+                break;
+            }
+        }
+        return new Entry(name, hw,
+                video.getSupportedWidths().getUpper(),
+                video.getSupportedHeights().getUpper(),
+                maxPixels, maxLevels);
+    }
+
+    private static long area(Entry e)
+    {
+        return e.maxPixels > 0 ? e.maxPixels : (long) e.maxWidth * e.maxHeight;
+    }
+
+    // --- Persistence ---
+
+    private static DecoderCapabilities read(File file)
+    {
+        if (!file.exists()) return null;
+        try
+        {
+            JSONObject json = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (json.optInt("schema") != SCHEMA_VERSION || !Build.FINGERPRINT.equals(json.optString("fingerprint")))
+            {
+                Log.d(TAG, "Cached profile is from another build — rescanning");
+                return null;
+            }
+            return new DecoderCapabilities(Build.FINGERPRINT,
+                    readMap(json.getJSONObject("hardware"), true),
+                    readMap(json.getJSONObject("software"), false));
+        }
+        catch (IOException | JSONException e)
+        {
+            Log.w(TAG, "Cached profile unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, Entry> readMap(JSONObject json, boolean hw) throws JSONException
+    {
+        Map<String, Entry> map = new HashMap<>();
+        JSONArray names = json.names();
+        if (names == null) return map;
+        for (int i = 0; i < names.length(); i++)
+        {
+            String mime = names.getString(i);
+            JSONObject e = json.getJSONObject(mime);
+            Map<Integer, Integer> maxLevels = new HashMap<>();
+            JSONObject levels = e.optJSONObject("maxLevels");
+            JSONArray profiles = levels != null ? levels.names() : null;
+            if (profiles != null) for (int j = 0; j < profiles.length(); j++)
+            {
+                String profile = profiles.getString(j);
+                maxLevels.put(Integer.parseInt(profile), levels.getInt(profile));
+            }
+            map.put(mime, new Entry(e.getString("name"), hw,
+                    e.getInt("maxWidth"), e.getInt("maxHeight"), e.getLong("maxPixels"), maxLevels));
+        }
+        return map;
+    }
+
+    private void write(File file)
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp))
+        {
+            JSONObject json = new JSONObject();
+            json.put("schema", SCHEMA_VERSION);
+            json.put("fingerprint", fingerprint);
+            json.put("hardware", writeMap(hardware));
+            json.put("software", writeMap(software));
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException | JSONException e)
+        {
+            Log.w(TAG, "Could not persist profile: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file))
+        {
+            Log.w(TAG, "rename failed for " + file.getName());
+            tmp.delete();
+        }
+    }
+
+    private static JSONObject writeMap(Map<String, Entry> map) throws JSONException
+    {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Entry> e : map.entrySet())
+        {
+            JSONObject entry = new JSONObject();
+            entry.put("name", e.getValue().decoderName);
+            entry.put("maxWidth", e.getValue().maxWidth);
+            entry.put("maxHeight", e.getValue().maxHeight);
+            entry.put("maxPixels", e.getValue().maxPixels);
+            JSONObject levels = new JSONObject();
+            for (Map.Entry<Integer, Integer> l : e.getValue().maxLevels.entrySet())
+                levels.put(String.valueOf(l.getKey()), (int) l.getValue());
+            entry.put("maxLevels", levels);
+            json.put(e.getKey(), entry);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,166 @@
+package com.ua.toolkit.media;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the rendition to play from the set in AdConfig.
+ *
+ * Starts from the screen's long edge as the size ceiling, then lowers it for low-RAM devices and
+ * under thermal pressure. Renditions whose files are missing or which the device cannot decode
+ * (per {@link DecoderCapabilities}) are discarded, hardware-decodable ones are preferred, and the
+ * largest one under the ceiling wins. If everything is above it, the smallest is used.
+ */
+public final class RenditionSelector
+{
+    private static final String TAG = "UA/RenditionSelector";
+
+    /** "2 GB class" devices report well under 3 GB total once the kernel and carve-outs are taken. */
+    private static final long LOW_RAM_TOTAL_BYTES = 3L * 1024 * 1024 * 1024;
+    private static final int  LOW_RAM_MAX_EDGE    = 1280; // 720p
+    private static final int  THERMAL_MODERATE_MAX_EDGE = 1280;
+    private static final int  THERMAL_SEVERE_MAX_EDGE   = 854; // 480p
+
+    /** The chosen rendition and the constraints that shaped the choice, for metrics. */
+    public static final class Selection
+    {
+        public final VideoRendition rendition;
+        public final int    maxEdge;
+        public final String constraints; // comma-separated: "screen", "lowRam", "thermalModerate", …
+
+        Selection(VideoRendition rendition, int maxEdge, String constraints)
+        {
+            this.rendition   = rendition;
+            this.maxEdge     = maxEdge;
+            this.constraints = constraints;
+        }
+
+        public JSONObject toJson()
+        {
+            try
+            {
+                JSONObject json = rendition.toJson();
+                json.put("maxEdge", maxEdge);
+                json.put("constraints", constraints);
+                return json;
+            }
+            catch (JSONException e)
+            {
+                Log.w(TAG, "toJson failed: " + e.getMessage());
+                return new JSONObject();
+            }
+        }
+    }
+
+    private RenditionSelector() { }
+
+    /**
+     * @return the selection, or null if no rendition is present and decodable — the caller then
+     *         falls back to AdConfig.videoPath
+     */
+    public static Selection select(Context context, List<VideoRendition> renditions)
+    {
+        if (renditions == null || renditions.isEmpty()) return null;
+
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        int maxEdge = Math.max(dm.widthPixels, dm.heightPixels);
+        StringBuilder constraints = new StringBuilder("screen");
+
+        if (isLowRamDevice(context))
+        {
+            maxEdge = Math.min(maxEdge, LOW_RAM_MAX_EDGE);
+            constraints.append(",lowRam");
+        }
+        int thermal = thermalStatus(context);
+        if (thermal >= PowerManager.THERMAL_STATUS_SEVERE)
+        {
+            maxEdge = Math.min(maxEdge, THERMAL_SEVERE_MAX_EDGE);
+            constraints.append(",thermalSevere");
+        }
+        else if (thermal >= PowerManager.THERMAL_STATUS_MODERATE)
+        {
+            maxEdge = Math.min(maxEdge, THERMAL_MODERATE_MAX_EDGE);
+            constraints.append(",thermalModerate");
+        }
+
+        DecoderCapabilities caps = DecoderCapabilities.get();
+        List<VideoRendition> decodable = new ArrayList<>();
+        List<VideoRendition> hardware  = new ArrayList<>();
+        for (VideoRendition r : renditions)
+        {
+            if (!r.isFilePresent())
+            {
+                Log.d(TAG, "Skipping " + r + " — file not cached");
+                continue;
+            }
+            if (!canDecode(caps, r))
+            {
+                Log.d(TAG, "Skipping " + r + " — no decoder");
+                continue;
+            }
+            decodable.add(r);
+            if (caps == null || caps.canDecodeInHardware(r.codec, r.width, r.height, r.profile, r.level)) hardware.add(r);
+        }
+        if (decodable.isEmpty()) return null;
+        List<VideoRendition> pool = hardware.isEmpty() ? decodable : hardware;
+        if (hardware.isEmpty()) constraints.append(",softwareDecode");
+
+        VideoRendition best = pickUnder(pool, maxEdge);
+        Log.d(TAG, "Selected " + best + " (maxEdge=" + maxEdge + ", " + constraints + ")");
+        return new Selection(best, maxEdge, constraints.toString());
+    }
+
+    /** Largest rendition with long edge <= maxEdge, else the smallest. Ties go to the lower bitrate. */
+    private static VideoRendition pickUnder(List<VideoRendition> pool, int maxEdge)
+    {
+        VideoRendition under = null;
+        VideoRendition smallest = null;
+        for (VideoRendition r : pool)
+        {
+            if (r.longEdge() <= maxEdge && (under == null || isBetterUnder(r, under))) under = r;
+            if (smallest == null || r.longEdge() < smallest.longEdge()
+                    || (r.longEdge() == smallest.longEdge() && r.bitrate < smallest.bitrate)) smallest = r;
+        }
+        return under != null ? under : smallest;
+    }
+
+    private static boolean isBetterUnder(VideoRendition candidate, VideoRendition current)
+    {
+        if (candidate.longEdge() != current.longEdge()) return candidate.longEdge() > current.longEdge();
+        return candidate.bitrate < current.bitrate;
+    }
+
+    /** Without a profile only H.264 is assumed — it is the one codec every Android device decodes. */
+    private static boolean canDecode(DecoderCapabilities caps, VideoRendition r)
+    {
+        if (caps == null) return VideoRendition.DEFAULT_CODEC.equalsIgnoreCase(r.codec);
+        return caps.canDecode(r.codec, r.width, r.height, r.profile, r.level);
+    }
+
+    private static boolean isLowRamDevice(Context context)
+    {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) return false;
+        if (am.isLowRamDevice()) return true;
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        am.getMemoryInfo(info);
+        return info.totalMem > 0 && info.totalMem < LOW_RAM_TOTAL_BYTES;
+    }
+
+    private static int thermalStatus(Context context)
+    {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return PowerManager.THERMAL_STATUS_NONE;
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return pm != null ? pm.getCurrentThermalStatus() : PowerManager.THERMAL_STATUS_NONE;
+    }
+}
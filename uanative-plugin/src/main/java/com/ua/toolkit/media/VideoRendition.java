@@ -0,0 +1,120 @@
+package com.ua.toolkit.media;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One encoding of a video creative. Unity passes the set as a JSON array in the
+ * {@code VIDEO_RENDITIONS} extra:
+ * <pre>
+ * [{"path":"/…/ad_720.mp4","width":1280,"height":720,"bitrate":1500000,"codec":"video/avc",
+ *   "sha256":"…","profile":8,"level":2048}, …]
+ * </pre>
+ * {@code codec} is a MediaFormat mime type and defaults to {@code video/avc}; {@code bitrate} is
+ * in bits per second and optional. {@code sha256} is the file's expected hex digest, checked
+ * before display when present. {@code profile} and {@code level} are optional
+ * {@code MediaCodecInfo.CodecProfileLevel} constants; with them, renditions the device has no
+ * decoder for (HEVC Main10, AVC High@5.2…) are skipped instead of failing preflight.
+ */
+public final class VideoRendition
+{
+    private static final String TAG = "UA/Rendition";
+    public static final String DEFAULT_CODEC = "video/avc";
+
+    public final String path;
+    public final int    width;
+    public final int    height;
+    public final int    bitrate;
+    public final String codec;
+    public final String sha256; // null = not verified
+    public final int    profile; // CodecProfileLevel; 0 = unknown
+    public final int    level;   // CodecProfileLevel; 0 = unknown
+
+    public VideoRendition(String path, int width, int height, int bitrate, String codec)
+    {
+        this(path, width, height, bitrate, codec, null);
+    }
+
+    public VideoRendition(String path, int width, int height, int bitrate, String codec, String sha256)
+    {
+        this(path, width, height, bitrate, codec, sha256, 0, 0);
+    }
+
+    public VideoRendition(String path, int width, int height, int bitrate, String codec, String sha256,
+                          int profile, int level)
+    {
+        this.path    = path;
+        this.width   = Math.max(0, width);
+        this.height  = Math.max(0, height);
+        this.bitrate = Math.max(0, bitrate);
+        this.codec   = (codec != null && !codec.isEmpty()) ? codec : DEFAULT_CODEC;
+        this.sha256  = (sha256 != null && sha256.length() == 64) ? sha256.toLowerCase(Locale.ROOT) : null;
+        this.profile = Math.max(0, profile);
+        this.level   = Math.max(0, level);
+    }
+
+    /** Long edge in px — renditions are compared by this so portrait and landscape ads rank alike. */
+    public int longEdge()
+    {
+        return Math.max(width, height);
+    }
+
+    public boolean isFilePresent()
+    {
+        if (path == null || path.isEmpty()) return false;
+        File file = new File(path);
+        return file.exists() && file.length() > 0;
+    }
+
+    JSONObject toJson() throws JSONException
+    {
+        JSONObject json = new JSONObject();
+        json.put("path", path);
+        json.put("width", width);
+        json.put("height", height);
+        json.put("bitrate", bitrate);
+        json.put("codec", codec);
+        if (profile > 0) json.put("profile", profile);
+        if (level > 0) json.put("level", level);
+        return json;
+    }
+
+    @Override
+    public String toString()
+    {
+        return width + "x" + height + " " + codec + (bitrate > 0 ? " @" + bitrate / 1000 + "kbps" : "");
+    }
+
+    /** Parses the {@code VIDEO_RENDITIONS} extra. Malformed entries are skipped; never returns null. */
+    public static List<VideoRendition> parseList(String json)
+    {
+        if (json == null || json.isEmpty()) return Collections.emptyList();
+        List<VideoRendition> list = new ArrayList<>();
+        try
+        {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++)
+            {
+                JSONObject o = array.optJSONObject(i);
+                if (o == null || o.optString("path").isEmpty()) continue;
+                list.add(new VideoRendition(o.optString("path"), o.optInt("width"), o.optInt("height"),
+                        o.optInt("bitrate"), o.optString("codec", DEFAULT_CODEC), o.optString("sha256", null),
+                        o.optInt("profile"), o.optInt("level")));
+            }
+        }
+        catch (JSONException e)
+        {
+            Log.w(TAG, "VIDEO_RENDITIONS is not a JSON array: " + e.getMessage());
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
@@ -3,7 +3,6 @@ package com.ua.toolkit.popup;
 import android.app.Activity;
 import android.graphics.Color;
 import android.graphics.Typeface;
-import android.graphics.drawable.GradientDrawable;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.View;
@@ -27,6 +26,7 @@ class AdFeedbackButton
     interface Listener
     {
         void onNotInterested();
+        void onPanelToggled(boolean open);
     }
 
     private static final int ANIM_DURATION_MS   = 150;
@@ -169,6 +169,7 @@ class AdFeedbackButton
         if (_outerContainer == null) return;
         _outerContainer.animate().cancel();
         _panel.animate().cancel();
+        if (_isOpen && _listener != null) _listener.onPanelToggled(false);
         _isOpen = false;
         if (_toggleButton != null) _toggleButton.setText(TEXT_TOGGLE_COLLAPSED);
         _panel.setVisibility(View.GONE);
@@ -225,10 +226,7 @@ class AdFeedbackButton
         int padV = dpToPx(PANEL_PADDING_V_DP);
         panel.setPadding(padH, padV, padH, padV);
 
-        GradientDrawable bg = new GradientDrawable();
-        bg.setColor(PANEL_BG_COLOR);
-        bg.setCornerRadius(dpToPx(PANEL_CORNER_DP));
-        panel.setBackground(bg);
+        panel.setBackground(AdVisualsHelper.makeRoundedBackground(PANEL_BG_COLOR, dpToPx(PANEL_CORNER_DP)));
 
         LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
                 dpToPx(PANEL_WIDTH_DP),
@@ -329,10 +327,12 @@ class AdFeedbackButton
             _toggleButton.setText(TEXT_TOGGLE_COLLAPSED);
             _panel.setVisibility(View.GONE);
             _panel.setAlpha(0f);
+            if (_listener != null) _listener.onPanelToggled(false);
         }
         else
         {
             _isOpen = true;
+            if (_listener != null) _listener.onPanelToggled(true);
             _toggleButton.setText(TEXT_TOGGLE_EXPANDED);
             populatePanel();
 
@@ -35,6 +35,7 @@ public class AdPopup
         void onCollapsed();       // Stage 2 → Stage 3 — resume video
         void onAdClicked();       // Stage 1 GET tapped — fire analytics
         void onNotInterested();   // Feedback "Not Interested" tapped
+        void onFeedbackPanelToggled(boolean open); // Feedback panel opened/closed over the content
     }
 
     public static final int REQUEST_PLAY_OVERLAY = 1001;
@@ -102,8 +103,10 @@ public class AdPopup
         _stage1Card.setVisibility(View.INVISIBLE);
 
         _feedbackButton = new AdFeedbackButton(_activity);
-        _feedbackButton.attach(_rootLayout, () -> {
-            _listener.onNotInterested();
+        _feedbackButton.attach(_rootLayout, new AdFeedbackButton.Listener()
+        {
+            @Override public void onNotInterested() { _listener.onNotInterested(); }
+            @Override public void onPanelToggled(boolean open) { _listener.onFeedbackPanelToggled(open); }
         });
     }
 
@@ -1,16 +1,30 @@
 package com.ua.toolkit.popup;
 
 import android.graphics.Color;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 
 import com.ua.toolkit.AdConfig;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Static styling helpers for AdPopup — handles all colour parsing and drawable construction
  * so that AdPopup itself stays focused on ad-lifecycle logic ("Thin Controller, Fat Helper").
+ *
+ * Backgrounds are cached by style (shape, colour, radius and stroke, all in px so density is
+ * part of the key). Each call returns a new drawable from the cached
+ * {@link Drawable.ConstantState}, so back-to-back ads with the same styling reuse one state
+ * instead of rebuilding it. Bounds and alpha stay per drawable. Colour, radius and stroke
+ * live in the shared state, so a caller that wants to change those must call
+ * {@code mutate()} first. Main thread only.
  */
 public class AdVisualsHelper
 {
+    private static final int MAX_CACHED_STYLES = 32; // a handful per ad layout; cleared if configs churn
+    private static final Map<String, Drawable.ConstantState> STYLE_CACHE = new HashMap<>();
+
     /** Parses a hex colour string, returning {@code fallback} on null, empty, or malformed input. */
     public static int parseColor(String hex, int fallback)
     {
@@ -22,23 +36,17 @@ public class AdVisualsHelper
     /** Builds the pill-card background drawable using {@code config.cardBackgroundColor} and corner radius. */
     static GradientDrawable makeCardBackground(AdConfig config, float cornerRadiusPx)
     {
-        GradientDrawable bg = new GradientDrawable();
-        bg.setColor(parseColor(
+        return styled(GradientDrawable.RECTANGLE, parseColor(
                 config != null ? config.cardBackgroundColor : null,
-                Color.parseColor("#80000000")));
-        bg.setCornerRadius(cornerRadiusPx);
-        return bg;
+                Color.parseColor("#80000000")), cornerRadiusPx, 0, 0);
     }
 
     /** Builds the GET-button background drawable using {@code config.getButtonColor} and corner radius. */
     static GradientDrawable makeButtonBackground(AdConfig config, float cornerRadiusPx)
     {
-        GradientDrawable bg = new GradientDrawable();
-        bg.setColor(parseColor(
+        return styled(GradientDrawable.RECTANGLE, parseColor(
                 config != null ? config.getButtonColor : null,
-                Color.parseColor("#4CAF50")));
-        bg.setCornerRadius(cornerRadiusPx);
-        return bg;
+                Color.parseColor("#4CAF50")), cornerRadiusPx, 0, 0);
     }
 
     /** Returns the GET-button text colour from config, falling back to {@link Color#WHITE}. */
@@ -54,11 +62,7 @@ public class AdVisualsHelper
      */
     public static GradientDrawable makeCircleBackground(int bgColor, int borderColor, float borderWidthPx)
     {
-        GradientDrawable bg = new GradientDrawable();
-        bg.setShape(GradientDrawable.OVAL);
-        bg.setColor(bgColor);
-        bg.setStroke((int) borderWidthPx, borderColor);
-        return bg;
+        return styled(GradientDrawable.OVAL, bgColor, 0, (int) borderWidthPx, borderColor);
     }
 
     /**
@@ -68,11 +72,29 @@ public class AdVisualsHelper
      */
     public static GradientDrawable makeRoundedBackground(int bgColor, int borderColor, int cornerRadiusPx, float borderWidthPx)
     {
+        return styled(GradientDrawable.RECTANGLE, bgColor, cornerRadiusPx, (int) borderWidthPx, borderColor);
+    }
+
+    /** Borderless rounded rectangle — timer pill, feedback panel. */
+    public static GradientDrawable makeRoundedBackground(int bgColor, float cornerRadiusPx)
+    {
+        return styled(GradientDrawable.RECTANGLE, bgColor, cornerRadiusPx, 0, 0);
+    }
+
+    /** A drawable for this style, sharing its ConstantState with earlier ones of the same style. */
+    private static GradientDrawable styled(int shape, int color, float cornerRadiusPx, int strokePx, int strokeColor)
+    {
+        String key = shape + ":" + color + ":" + cornerRadiusPx + ":" + strokePx + ":" + strokeColor;
+        Drawable.ConstantState state = STYLE_CACHE.get(key);
+        if (state != null) return (GradientDrawable) state.newDrawable();
+
         GradientDrawable bg = new GradientDrawable();
-        bg.setShape(GradientDrawable.RECTANGLE);
-        bg.setCornerRadius(cornerRadiusPx);
-        bg.setColor(bgColor);
-        bg.setStroke((int) borderWidthPx, borderColor);
+        bg.setShape(shape);
+        bg.setColor(color);
+        if (cornerRadiusPx > 0) bg.setCornerRadius(cornerRadiusPx);
+        if (strokePx > 0) bg.setStroke(strokePx, strokeColor);
+        if (STYLE_CACHE.size() >= MAX_CACHED_STYLES) STYLE_CACHE.clear();
+        STYLE_CACHE.put(key, bg.getConstantState());
         return bg;
     }
 }
@@ -11,6 +11,8 @@ import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
+import com.ua.toolkit.WebViewWarmUp;
+
 /**
  * Resolves Adjust tracker URLs using a hidden WebView to follow redirects.
  * Intercepts Play Store URLs in the redirect chain and extracts package info.
@@ -118,7 +120,7 @@ public class HeadlessWebViewResolver
     {
         Log.d(TAG, "Creating headless WebView for host: " + Uri.parse(url).getHost());
 
-        webView = new WebView(context);
+        webView = WebViewWarmUp.create(context);
 
         // Configure WebView settings
         WebSettings settings = webView.getSettings();